@@ -1,17 +1,88 @@
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 public final class AppContext {
     private final Database db = new Database("library.db");
     private final UserStore userStore;
     private final AuthService authService;
     private final UserService userService;
+    private final CachingLibraryRepository catalogCache;
+    private final ReplicaManager replicas;
     private final LibraryService libraryService;
+    private final List<LoanArchiver> loanArchivers = new ArrayList<>();
+    private final List<MaintenanceScheduler> maintenance = new ArrayList<>();
 
     public AppContext() {
         db.init();
-        this.userStore = new SqliteUserStore(db);
+        db.startBackgroundMigrations();
+        // PBKDF2 cost for new password hashes: about this many milliseconds per hash on this machine
+        PasswordUtil.calibrate(Long.getLong("library.passwordHashMillis", 100));
+        // session lookups hit the user table on every request; delete/password changes invalidate
+        this.userStore = new CachingUserStore(new SqliteUserStore(db));
         this.authService = new AuthService(userStore);
         this.userService = new UserService(userStore);
-        this.libraryService = new LibraryService(new SqliteLibraryRepository(db));
+        // -Dlibrary.repository=memory keeps books and loans in memory only (kiosks, load tests);
+        // =journal acknowledges borrows/returns once they are in library.journal and applies them in the background.
+        String repositoryMode = System.getProperty("library.repository", "sqlite");
+        // databases holding loans (archiving) and every database file (maintenance)
+        List<Database> loanDatabases = new ArrayList<>(List.of(db));
+        List<Database> databases = new ArrayList<>(List.of(db));
+        if ("memory".equalsIgnoreCase(repositoryMode)) {
+            this.catalogCache = null;
+            this.replicas = null;
+            this.libraryService = new LibraryService(new InMemoryLibraryRepository(userStore));
+        } else if ("journal".equalsIgnoreCase(repositoryMode)) {
+            this.catalogCache = null;
+            this.replicas = null;
+            this.libraryService = new LibraryService(
+                    new JournaledLibraryRepository(db, userStore, Path.of("library.journal")));
+        } else {
+            // -Dlibrary.shards=N (N > 1) spreads books and loans over library-shard-0..N-1.db
+            int shards = Integer.getInteger("library.shards", 1);
+            LibraryRepository tables;
+            if (shards > 1) {
+                ShardedLibraryRepository.requireNoUnshardedData(db);
+                ShardedLibraryRepository sharded = ShardedLibraryRepository.open("library", shards, userStore);
+                for (Database shard : sharded.databases()) shard.startBackgroundMigrations();
+                loanDatabases = new ArrayList<>(sharded.databases());
+                databases.addAll(sharded.databases());
+                tables = sharded;
+            } else {
+                tables = new SqliteLibraryRepository(db);
+            }
+            // -Dlibrary.replicaRefreshSeconds=N serves loan reports from a copy refreshed every N seconds
+            long replicaRefreshSeconds = Long.getLong("library.replicaRefreshSeconds", 0);
+            if (replicaRefreshSeconds > 0 && shards <= 1) {
+                this.replicas = new ReplicaManager("library.db");
+                replicas.start(replicaRefreshSeconds);
+                // a missed refresh or two is fine; beyond that reports fall back to the primary
+                tables = new ReplicaRoutingLibraryRepository(tables, replicas, 3 * replicaRefreshSeconds * 1000);
+            } else {
+                this.replicas = null;
+            }
+            // findBook/listBooks/searchBooks are served from memory; writes through this instance invalidate it.
+            this.catalogCache = new CachingLibraryRepository(tables);
+            this.libraryService = new LibraryService(catalogCache);
+        }
         seedDemoData();
+
+        // Returned loans older than this many days move to loans_archive (checked hourly).
+        int archiveAfterDays = Integer.getInteger("library.archiveAfterDays", LoanArchiver.DEFAULT_MAX_AGE_DAYS);
+        for (Database d : loanDatabases) {
+            LoanArchiver archiver = new LoanArchiver(d, archiveAfterDays);
+            archiver.start(60);
+            loanArchivers.add(archiver);
+        }
+
+        // Checkpoint / incremental vacuum / optimize every 10 minutes, optionally only inside
+        // -Dlibrary.maintenanceWindow=01:00-05:00; each step waits until no checkout is writing.
+        // Every file (library.db and each shard) gets its own scheduler.
+        for (Database d : databases) {
+            MaintenanceScheduler scheduler = MaintenanceScheduler.withWindow(d, System.getProperty("library.maintenanceWindow"));
+            scheduler.start(10);
+            maintenance.add(scheduler);
+        }
     }
 
     private void seedDemoData() {
@@ -43,6 +114,30 @@ public final class AppContext {
         return libraryService;
     }
 
+    // null when the in-memory repository is used
+    public CachingLibraryRepository catalogCache() {
+        return catalogCache;
+    }
+
+    // one per database file: library.db first, then the shards
+    public List<MaintenanceScheduler> maintenance() {
+        return List.copyOf(maintenance);
+    }
+
+    // null unless report replicas are enabled
+    public ReplicaManager replicas() {
+        return replicas;
+    }
+
+    // the cached store that backs auth() and users()
+    public UserStore userStore() {
+        return userStore;
+    }
+
+    public Database database() {
+        return db;
+    }
+
     public User findUser(String username) {
         return userStore.findByUsername(username);
     }
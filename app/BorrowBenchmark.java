@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+// Compares the single-statement borrow/return path with the previous three-step version.
+// Run: java -cp "bin;lib\sqlite-jdbc.jar" BorrowBenchmark [rounds]
+public final class BorrowBenchmark {
+    private static final int BOOKS = 200;
+    private static final int USERS = 50;
+    private static final int COPIES = 1_000;
+
+    private interface BorrowReturn {
+        Loan borrow(Connection c, String username, int bookId, LocalDate today) throws SQLException;
+
+        boolean giveBack(Connection c, String username, int bookId, LocalDate today) throws SQLException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 20_000;
+        Path dir = Files.createTempDirectory("borrow-bench");
+
+        BorrowReturn singleStatement = new BorrowReturn() {
+            public Loan borrow(Connection c, String username, int bookId, LocalDate today) throws SQLException {
+                return SqliteLibraryRepository.borrowInTransaction(c, username, bookId, today);
+            }
+
+            public boolean giveBack(Connection c, String username, int bookId, LocalDate today) throws SQLException {
+                return SqliteLibraryRepository.returnInTransaction(c, username, bookId, today);
+            }
+        };
+        BorrowReturn threeStep = new BorrowReturn() {
+            public Loan borrow(Connection c, String username, int bookId, LocalDate today) throws SQLException {
+                return legacyBorrow(c, username, bookId, today);
+            }
+
+            public boolean giveBack(Connection c, String username, int bookId, LocalDate today) throws SQLException {
+                return legacyReturn(c, username, bookId, today);
+            }
+        };
+
+        // warm-up, then measured runs on fresh databases
+        run("warm-up", dir.resolve("warmup.db"), false, singleStatement, rounds / 10);
+        run("three-step (SELECT + INSERT + UPDATE)", dir.resolve("legacy.db"), true, threeStep, rounds);
+        run("single statement (INSERT..SELECT..RETURNING + triggers)", dir.resolve("single.db"), false, singleStatement, rounds);
+        deleteQuietly(dir);
+    }
+
+    private static void run(String label, Path file, boolean dropInventoryTriggers, BorrowReturn impl, int rounds)
+            throws SQLException {
+        try (Database db = new Database(file.toString())) {
+            db.init();
+            seed(db, dropInventoryTriggers);
+            LocalDate today = LocalDate.now();
+            long start = System.nanoTime();
+            try (Connection c = db.connect()) {
+                for (int i = 0; i < rounds; i++) {
+                    String username = "user" + (i % USERS);
+                    int bookId = 1 + (i % BOOKS);
+                    c.setAutoCommit(false);
+                    if (impl.borrow(c, username, bookId, today) == null) throw new IllegalStateException("borrow failed");
+                    c.commit();
+                    if (!impl.giveBack(c, username, bookId, today)) throw new IllegalStateException("return failed");
+                    c.commit();
+                    c.setAutoCommit(true);
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            double perPair = nanos / 1_000.0 / rounds;
+            System.out.printf("%-58s %8d borrow+return pairs  %10.1f us/pair  %10.0f pairs/s%n",
+                    label, rounds, perPair, rounds / (nanos / 1e9));
+        }
+    }
+
+    private static void seed(Database db, boolean dropInventoryTriggers) throws SQLException {
+        try (Connection c = db.connect(); Statement st = c.createStatement()) {
+            if (dropInventoryTriggers) {
+                // the three-step path maintains available_copies itself
+                st.execute("DROP TRIGGER IF EXISTS trg_loans_borrow_inventory");
+                st.execute("DROP TRIGGER IF EXISTS trg_loans_return_inventory");
+            }
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO users(username, password_hash, role) VALUES(?, 'x', 'STUDENT')")) {
+                for (int u = 0; u < USERS; u++) {
+                    ps.setString(1, "user" + u);
+                    ps.executeUpdate();
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO books(title, author, total_copies, available_copies, is_deleted) VALUES(?,?,?,?,0)")) {
+                for (int b = 0; b < BOOKS; b++) {
+                    ps.setString(1, "Title " + b);
+                    ps.setString(2, "Author " + b);
+                    ps.setInt(3, COPIES);
+                    ps.setInt(4, COPIES);
+                    ps.executeUpdate();
+                }
+            }
+            c.commit();
+            c.setAutoCommit(true);
+        }
+    }
+
+    // Previous implementation, kept here as the baseline.
+    private static Loan legacyBorrow(Connection c, String u, int bookId, LocalDate today) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT available_copies FROM books WHERE id = ? AND is_deleted = 0 LIMIT 1")) {
+            ps.setInt(1, bookId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt("available_copies") <= 0) return null;
+            }
+        }
+        int loanId;
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO loans(username, book_id, loan_date, return_date) VALUES(?,?,?,NULL)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, u);
+            ps.setInt(2, bookId);
+            ps.setLong(3, today.toEpochDay());
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No loan id generated");
+                loanId = keys.getInt(1);
+            }
+        }
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE books SET available_copies = available_copies - 1 WHERE id = ? AND available_copies > 0")) {
+            ps.setInt(1, bookId);
+            if (ps.executeUpdate() != 1) return null;
+        }
+        return new Loan(loanId, u, bookId, today);
+    }
+
+    private static boolean legacyReturn(Connection c, String u, int bookId, LocalDate today) throws SQLException {
+        Integer loanId = null;
+        try (PreparedStatement ps = c.prepareStatement(
+                "SELECT id FROM loans WHERE username = ? AND book_id = ? AND return_date IS NULL LIMIT 1")) {
+            ps.setString(1, u);
+            ps.setInt(2, bookId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) loanId = rs.getInt("id");
+            }
+        }
+        if (loanId == null) return false;
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE loans SET return_date = ? WHERE id = ? AND return_date IS NULL")) {
+            ps.setLong(1, today.toEpochDay());
+            ps.setInt(2, loanId);
+            if (ps.executeUpdate() != 1) return false;
+        }
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE books " +
+                        "SET available_copies = CASE WHEN available_copies < total_copies THEN available_copies + 1 ELSE available_copies END " +
+                        "WHERE id = ?")) {
+            ps.setInt(1, bookId);
+            ps.executeUpdate();
+        }
+        return true;
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        } catch (IOException ignored) {
+            // temp files only
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+
+// Checks that a write hitting SQLITE_BUSY is retried by SqliteRetry rather than failing inside
+// SQLite's busy wait: another connection holds the write lock for a while, addBook must succeed
+// after it is released (with retries > 0), and must give up once the lock outlasts the deadline.
+// Run: java -cp "bin;lib\sqlite-jdbc.jar" BusyRetryCheck   (exit code 1 on failure)
+public final class BusyRetryCheck {
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("busy-retry");
+        Path file = dir.resolve("check.db");
+        boolean ok;
+        try (Database db = new Database(file.toString())) {
+            db.init();
+            SqliteLibraryRepository repo = new SqliteLibraryRepository(db);
+            ok = expectRetried(db, repo, file, 1_500);
+            ok &= expectGiveUp(db, repo, file, SqliteRetry.DEFAULT_DEADLINE_MILLIS + 1_500);
+            repo.close();
+        } finally {
+            deleteQuietly(dir);
+        }
+        System.out.println(ok ? "OK" : "FAILED");
+        if (!ok) System.exit(1);
+    }
+
+    private static boolean expectRetried(Database db, SqliteLibraryRepository repo, Path file, long holdMillis)
+            throws Exception {
+        long retriesBefore = db.retry().getRetries();
+        Thread holder = holdWriteLock(file, holdMillis);
+        long start = System.nanoTime();
+        Book b = repo.addBook("Busy check", "Author", 1);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        holder.join();
+        long retries = db.retry().getRetries() - retriesBefore;
+        boolean ok = b != null && retries > 0 && elapsed >= holdMillis / 2;
+        System.out.printf("lock held %d ms: addBook succeeded after %d ms, %d retries -> %s (%s)%n",
+                holdMillis, elapsed, retries, ok ? "ok" : "FAILED", db.retry());
+        return ok;
+    }
+
+    private static boolean expectGiveUp(Database db, SqliteLibraryRepository repo, Path file, long holdMillis)
+            throws Exception {
+        long retriesBefore = db.retry().getRetries();
+        long giveUpsBefore = db.retry().getGiveUps();
+        Thread holder = holdWriteLock(file, holdMillis);
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            repo.addBook("Busy check 2", "Author", 1);
+        } catch (RuntimeException e) {
+            failed = SqliteRetry.isContention(e);
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        holder.join();
+        long retries = db.retry().getRetries() - retriesBefore;
+        long giveUps = db.retry().getGiveUps() - giveUpsBefore;
+        boolean ok = failed && retries > 0 && giveUps == 1 && elapsed < holdMillis;
+        System.out.printf("lock held %d ms: addBook gave up after %d ms, %d retries -> %s (%s)%n",
+                holdMillis, elapsed, retries, ok ? "ok" : "FAILED", db.retry());
+        return ok;
+    }
+
+    // Returns once the other connection holds the write lock; the thread ends when it is released.
+    private static Thread holdWriteLock(Path file, long holdMillis) throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + file);
+                 Statement st = c.createStatement()) {
+                st.execute("BEGIN IMMEDIATE");
+                locked.countDown();
+                Thread.sleep(holdMillis);
+                st.execute("COMMIT");
+            } catch (SQLException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                locked.countDown();
+            }
+        }, "lock-holder");
+        t.start();
+        locked.await();
+        return t;
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        } catch (IOException ignored) {
+            // temp files only
+        }
+    }
+}
@@ -1,3 +1,6 @@
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Scanner;
 
@@ -126,6 +129,7 @@ public final class LibraryManagementSystem {
             System.out.println("3) Remove book (only if no active loans)");
             System.out.println("4) View all loans");
             System.out.println("5) View active loans");
+            System.out.println("6) Import books from CSV file");
             System.out.println("0) Logout");
 
             int choice = readInt("Choose: ");
@@ -145,6 +149,9 @@ public final class LibraryManagementSystem {
                 case 5:
                     viewActiveLoans();
                     break;
+                case 6:
+                    importBooksFromCsv();
+                    break;
                 case 0:
                     System.out.println("Logged out.");
                     return;
@@ -312,6 +319,20 @@ public final class LibraryManagementSystem {
         }
     }
 
+    private void importBooksFromCsv() {
+        String path = readLine("CSV file (title,author,copies per line): ");
+        try (Reader in = Files.newBufferedReader(Paths.get(path.trim()))) {
+            CatalogCsvImporter.Result r = new CatalogCsvImporter(app.library()).importFrom(in,
+                    (rows, imported, rejected) -> System.out.println("... rows " + rows + ", imported " + imported + ", rejected " + rejected));
+            System.out.println("Import finished: " + r);
+            for (String detail : r.getRejectedDetails()) {
+                System.out.println("  rejected " + detail);
+            }
+        } catch (Exception e) {
+            System.out.println("Import failed: " + e.getMessage());
+        }
+    }
+
     private void removeBook() {
         int bookId = readInt("Book id to remove: ");
         boolean ok = app.library().removeBook(bookId);
@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// One set of LibraryRepository rules checked against both implementations, so the in-memory
+// repository keeps behaving like the SQLite one: availability, one active loan per user and book,
+// returns, removal with active loans, unknown users, prefix search and keyset paging.
+// Run: java -cp "bin;lib\sqlite-jdbc.jar" LibraryRepositoryContractCheck   (exit code 1 on failure)
+public final class LibraryRepositoryContractCheck {
+    private final String name;
+    private int failures;
+
+    private LibraryRepositoryContractCheck(String name) {
+        this.name = name;
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean ok;
+
+        InMemoryUserStore memoryUsers = new InMemoryUserStore();
+        addUsers(memoryUsers);
+        ok = new LibraryRepositoryContractCheck("memory").run(new InMemoryLibraryRepository(memoryUsers));
+
+        Path dir = Files.createTempDirectory("repo-contract");
+        try (Database db = new Database(dir.resolve("check.db").toString())) {
+            db.init();
+            addUsers(new SqliteUserStore(db));
+            SqliteLibraryRepository repo = new SqliteLibraryRepository(db);
+            ok &= new LibraryRepositoryContractCheck("sqlite").run(repo);
+            repo.close();
+        } finally {
+            deleteQuietly(dir);
+        }
+
+        System.out.println(ok ? "OK" : "FAILED");
+        if (!ok) System.exit(1);
+    }
+
+    private static void addUsers(UserStore users) {
+        users.add(new Student("alice", "secret123"));
+        users.add(new Student("bob", "secret123"));
+    }
+
+    private boolean run(LibraryRepository repo) throws IOException {
+        borrowAndReturn(repo);
+        removeWithActiveLoans(repo);
+        unknownUser(repo);
+        search(repo);
+        paging(repo);
+        System.out.printf("%-7s %s%n", name, (failures == 0) ? "ok" : failures + " failed");
+        return failures == 0;
+    }
+
+    private void borrowAndReturn(LibraryRepository repo) {
+        Book b = repo.addBook("Borrow Rules", "Tester", 2);
+
+        Loan first = repo.borrowBook("alice", b.getId());
+        expect(first != null, "borrow succeeds");
+        expect(available(repo, b) == 1, "borrow decrements availability");
+
+        expect(repo.borrowBook("alice", b.getId()) == null, "second active loan of the same book is refused");
+        expect(available(repo, b) == 1, "refused borrow leaves availability alone");
+
+        expect(repo.borrowBook("bob", b.getId()) != null, "another user can borrow the last copy");
+        expect(available(repo, b) == 0, "last copy taken");
+
+        Book single = repo.addBook("Single Copy", "Tester", 1);
+        expect(repo.borrowBook("alice", single.getId()) != null, "borrow the only copy");
+        expect(repo.borrowBook("bob", single.getId()) == null, "borrowing at 0 available fails");
+        expect(available(repo, single) == 0, "failed borrow leaves availability at 0");
+
+        expect(repo.returnBook("alice", single.getId()), "return succeeds");
+        expect(available(repo, single) == 1, "return restores availability");
+        expect(!repo.returnBook("alice", single.getId()), "double return fails");
+        expect(available(repo, single) == 1, "double return leaves availability alone");
+        expect(!repo.returnBook("bob", single.getId()), "return without a loan fails");
+    }
+
+    private void removeWithActiveLoans(LibraryRepository repo) {
+        Book b = repo.addBook("Removal Rules", "Tester", 1);
+        repo.borrowBook("alice", b.getId());
+        expect(!repo.removeBook(b.getId()), "removeBook refused while a loan is active");
+        expect(repo.findBook(b.getId()) != null, "book still listed after refused removal");
+
+        repo.returnBook("alice", b.getId());
+        expect(repo.removeBook(b.getId()), "removeBook succeeds once returned");
+        expect(repo.findBook(b.getId()) == null, "removed book is gone");
+        expect(repo.borrowBook("alice", b.getId()) == null, "removed book cannot be borrowed");
+    }
+
+    private void unknownUser(LibraryRepository repo) {
+        Book b = repo.addBook("User Rules", "Tester", 1);
+        expect(repo.borrowBook("nobody", b.getId()) == null, "borrowing needs an existing user");
+        expect(available(repo, b) == 1, "unknown user takes no copy");
+        expect(repo.borrowBook("ALICE", b.getId()) != null, "usernames are case-insensitive");
+    }
+
+    private void search(LibraryRepository repo) {
+        Book hobbit = repo.addBook("The Hobbit", "J. R. R. Tolkien", 1);
+        Book code = repo.addBook("Clean Code", "Robert Martin", 1);
+
+        expect(ids(repo.searchBooks("hob")).contains(hobbit.getId()), "a word prefix matches");
+        expect(ids(repo.searchBooks("HOB tolk")).contains(hobbit.getId()), "every token as a prefix, any case");
+        expect(ids(repo.searchBooks("clean cod")).equals(List.of(code.getId())), "tokens match title and author words");
+        expect(!ids(repo.searchBooks("obbit")).contains(hobbit.getId()), "the middle of a word does not match");
+        expect(!ids(repo.searchBooks("hobbit martin")).contains(hobbit.getId()), "all tokens must match");
+        expect(repo.searchBooks("").size() == repo.listBooks().size(), "empty query lists everything");
+    }
+
+    private void paging(LibraryRepository repo) {
+        List<Integer> all = ids(repo.listBooks());
+        List<Integer> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Book> page = repo.listBooksPage(BookSort.ID, cursor, 2);
+            expect(page.getItems().size() <= 2, "page holds at most limit items");
+            paged.addAll(ids(page.getItems()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        expect(paged.equals(all), "id pages cover every book once, in id order");
+
+        List<Book> byTitle = repo.listBooks();
+        byTitle.sort(Comparator.comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER).thenComparingInt(Book::getId));
+        List<Integer> titlePaged = new ArrayList<>();
+        cursor = null;
+        do {
+            Page<Book> page = repo.listBooksPage(BookSort.TITLE, cursor, 3);
+            titlePaged.addAll(ids(page.getItems()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        expect(titlePaged.equals(ids(byTitle)), "title pages follow title order");
+
+        List<Integer> loans = new ArrayList<>();
+        for (Loan l : repo.listAllLoans()) loans.add(l.getId());
+        List<Integer> loansPaged = new ArrayList<>();
+        cursor = null;
+        do {
+            Page<Loan> page = repo.listAllLoansPage(cursor, 1);
+            for (Loan l : page.getItems()) loansPaged.add(l.getId());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        expect(loansPaged.equals(loans), "loan pages cover every loan once");
+
+        Page<Book> exact = repo.listBooksPage(BookSort.ID, null, all.size());
+        expect(!exact.hasMore(), "no next cursor when the last page is exactly full");
+    }
+
+    private static int available(LibraryRepository repo, Book b) {
+        Book now = repo.findBook(b.getId());
+        return (now == null) ? -1 : now.getAvailableCopies();
+    }
+
+    private static List<Integer> ids(List<Book> books) {
+        List<Integer> out = new ArrayList<>();
+        for (Book b : books) out.add(b.getId());
+        return out;
+    }
+
+    private void expect(boolean condition, String rule) {
+        if (condition) return;
+        failures++;
+        System.out.println(name + ": FAILED " + rule);
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        } catch (IOException ignored) {
+            // temp files only
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+// Login throughput: legacy SHA-256 hashes (first login, rehashed on the way) versus calibrated PBKDF2,
+// with many concurrent clients going through AuthService's bounded pool.
+// Run: java -cp "bin;lib\sqlite-jdbc.jar" LoginBenchmark [logins] [clients] [targetMillis]
+public final class LoginBenchmark {
+    private static final int USERS = 200;
+    private static final String PASSWORD = "secret123";
+
+    public static void main(String[] args) throws Exception {
+        int logins = (args.length > 0) ? Integer.parseInt(args[0]) : 2_000;
+        int clients = (args.length > 1) ? Integer.parseInt(args[1]) : 32;
+        long targetMillis = (args.length > 2) ? Long.parseLong(args[2]) : 100;
+
+        int iterations = PasswordUtil.calibrate(targetMillis);
+        System.out.printf("PBKDF2 calibrated to %d iterations (target %d ms per hash, %d auth threads)%n",
+                iterations, targetMillis, AuthService.DEFAULT_THREADS);
+
+        InMemoryUserStore store = new InMemoryUserStore();
+        // hashes as written by older builds
+        String legacyHash = PasswordUtil.toHex(
+                MessageDigest.getInstance("SHA-256").digest(PASSWORD.getBytes(StandardCharsets.UTF_8)));
+        for (int u = 0; u < USERS; u++) {
+            store.add(new Student("user" + u, legacyHash, true));
+        }
+
+        // queue sized for every client so this measures throughput, not rejections
+        try (AuthService auth = new AuthService(store, AuthService.DEFAULT_THREADS, clients, 60_000)) {
+            run("first logins (legacy SHA-256 + rehash)", auth, USERS, clients);
+            run("PBKDF2 logins", auth, logins, clients);
+            System.out.println(auth);
+        }
+    }
+
+    private static void run(String label, AuthService auth, int logins, int clients) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        LongAdder ok = new LongAdder();
+        LongAdder busy = new LongAdder();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < logins; i++) {
+            String username = "user" + (i % USERS);
+            futures.add(pool.submit(() -> {
+                try {
+                    if (auth.authenticate(username, PASSWORD) == null) throw new IllegalStateException("login failed: " + username);
+                    ok.increment();
+                } catch (AuthService.AuthBusyException e) {
+                    busy.increment();
+                }
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+        System.out.printf("%-42s %6d ok %6d busy  %10.1f ms/login  %8.1f logins/s%n",
+                label, ok.sum(), busy.sum(), nanos / 1e6 / Math.max(1, ok.sum()), ok.sum() / (nanos / 1e9));
+    }
+}
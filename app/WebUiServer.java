@@ -1,12 +1,19 @@
 import com.sun.net.httpserver.HttpServer;
 
 import java.net.InetSocketAddress;
+import java.util.Base64;
+import java.util.concurrent.Executors;
 
 public final class WebUiServer {
     private static final String COOKIE_NAME = "SESSIONID";
 
     private final AppContext app = new AppContext();
-    private final SessionManager sessions = new SessionManager();
+    private final SessionStore sessions = createSessions();
+    // Login attempts: generous per address (a whole school can share one), tight per username.
+    private final RateLimiter loginsPerAddress = new RateLimiter("login-address",
+            Integer.getInteger("library.loginsPerAddressPerMinute", 60), 30);
+    private final RateLimiter loginsPerUser = new RateLimiter("login-user",
+            Integer.getInteger("library.loginsPerUserPerMinute", 10), 5);
 
     public static void main(String[] args) throws Exception {
         new WebUiServer().start(8080);
@@ -15,7 +22,9 @@ public final class WebUiServer {
     private void start(int port) throws Exception {
         HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
 
-        WebHandlers h = new WebHandlers(app, sessions, COOKIE_NAME);
+        loginsPerAddress.start(60);
+        loginsPerUser.start(60);
+        WebHandlers h = new WebHandlers(app, sessions, COOKIE_NAME, loginsPerAddress, loginsPerUser);
         // Static files (images, etc.)
         server.createContext("/assets/", h::handleAssets);
         server.createContext("/", h::handleRoot);
@@ -31,6 +40,7 @@ public final class WebUiServer {
         server.createContext("/librarian", h::handleLibrarian);
         server.createContext("/librarian/addBook", h::handleLibrarianAddBook);
         server.createContext("/librarian/removeBook", h::handleLibrarianRemoveBook);
+        server.createContext("/librarian/importBooks", h::handleLibrarianImportBooks);
 
         server.createContext("/admin", h::handleAdmin);
         server.createContext("/admin/createUser", h::handleAdminCreateUser);
@@ -45,14 +55,47 @@ public final class WebUiServer {
 
         server.createContext("/api/librarian/books", h::handleApiLibrarianBooks);
         server.createContext("/api/librarian/loans/active", h::handleApiLibrarianActiveLoans);
+        server.createContext("/api/librarian/export/loans", h::handleApiLibrarianExportLoans);
+        server.createContext("/api/librarian/export/books", h::handleApiLibrarianExportBooks);
 
         server.createContext("/api/admin/users", h::handleApiAdminUsers);
 
-        server.setExecutor(null);
+        // Worker pool so concurrent dashboard reads use the read-only connection pool in parallel.
+        server.setExecutor(Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2)));
         server.start();
 
         System.out.println("Web UI running at http://localhost:" + port);
         System.out.println("Demo logins: student1/student123 | librarian1/lib123 | admin/admin123");
     }
+
+    // -Dlibrary.sessions=signed: HMAC-signed cookies any node can verify. All nodes need the same
+    // base64 secret (>= 32 bytes) in LIBRARY_SESSION_SECRET or -Dlibrary.sessionSecret.
+    // =memory: sessions held in this process only.
+    // Default: sessions table in library.db, so a restart keeps everyone logged in.
+    private SessionStore createSessions() {
+        String mode = System.getProperty("library.sessions", "sqlite");
+        if ("signed".equalsIgnoreCase(mode)) {
+            String secret = System.getenv("LIBRARY_SESSION_SECRET");
+            if (secret == null || secret.isBlank()) secret = System.getProperty("library.sessionSecret");
+            byte[] key;
+            if (secret == null || secret.isBlank()) {
+                System.err.println("No session secret configured; using a random one (sessions end on restart and only work on this node).");
+                key = SignedSessionTokens.randomSecret();
+            } else {
+                key = Base64.getDecoder().decode(secret.trim());
+            }
+            SignedSessionTokens tokens = new SignedSessionTokens(key, app.userStore());
+            tokens.start(300);
+            return tokens;
+        }
+        if ("memory".equalsIgnoreCase(mode)) {
+            SessionManager manager = new SessionManager();
+            manager.start(60);
+            return manager;
+        }
+        SqliteSessionStore store = new SqliteSessionStore(app.database());
+        store.start(SqliteSessionStore.DEFAULT_FLUSH_SECONDS);
+        return store;
+    }
 }
 
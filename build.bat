@@ -9,6 +9,10 @@ javac -d bin ^
   app\AppContext.java ^
   app\LibraryManagementSystem.java ^
   app\WebUiServer.java ^
+  app\BorrowBenchmark.java ^
+  app\LoginBenchmark.java ^
+  app\BusyRetryCheck.java ^
+  app\LibraryRepositoryContractCheck.java ^
   models\*.java ^
   services\*.java ^
   stores\*.java ^
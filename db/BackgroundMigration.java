@@ -0,0 +1,46 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Long-running schema work (data backfills, index builds) that runs after startup while the app serves
+// requests. Each batch runs in its own short transaction together with saving its cursor, so an
+// interrupted run resumes where it stopped.
+public final class BackgroundMigration {
+    public interface Batch {
+        // Processes the next batch after cursor (null on the first call); returns the new cursor,
+        // or null when there is nothing left to do.
+        String run(Connection c, String cursor) throws SQLException;
+    }
+
+    private final String name;
+    private final Batch batch;
+
+    public BackgroundMigration(String name, Batch batch) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("name required");
+        if (batch == null) throw new IllegalArgumentException("batch required");
+        this.name = name;
+        this.batch = batch;
+    }
+
+    // SQLite builds an index in a single statement, so an online index build is one "batch";
+    // running it here keeps it off the startup path instead of splitting the build itself.
+    // The SQL must use IF NOT EXISTS: databases created before the index moved here may already have it.
+    public static BackgroundMigration createIndex(String name, String createIndexSql) {
+        if (createIndexSql == null || createIndexSql.isBlank()) throw new IllegalArgumentException("createIndexSql required");
+        if (!createIndexSql.toUpperCase().contains("IF NOT EXISTS")) throw new IllegalArgumentException("createIndexSql must use IF NOT EXISTS");
+        return new BackgroundMigration(name, (c, cursor) -> {
+            try (Statement st = c.createStatement()) {
+                st.execute(createIndexSql);
+            }
+            return null;
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    String runBatch(Connection c, String cursor) throws SQLException {
+        return batch.run(c, cursor);
+    }
+}
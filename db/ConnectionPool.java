@@ -0,0 +1,232 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final String url;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final List<String> pragmas;
+    private final int statementCacheSize;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<Physical> idle = new LinkedBlockingDeque<>();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private volatile boolean closed;
+
+    // A physical JDBC connection together with the statements compiled on it.
+    private static final class Physical {
+        private final Connection raw;
+        private final StatementCache statements;
+
+        private Physical(Connection raw, StatementCache statements) {
+            this.raw = raw;
+            this.statements = statements;
+        }
+    }
+
+    public ConnectionPool(String url, int maxSize, long maxWaitMillis, List<String> pragmas) {
+        this(url, maxSize, maxWaitMillis, pragmas, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public ConnectionPool(String url, int maxSize, long maxWaitMillis, List<String> pragmas, int statementCacheSize) {
+        if (url == null || url.isBlank()) throw new IllegalArgumentException("url required");
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        if (maxWaitMillis < 0) throw new IllegalArgumentException("maxWaitMillis must be >= 0");
+        if (statementCacheSize < 0) throw new IllegalArgumentException("statementCacheSize must be >= 0");
+        this.url = url;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.pragmas = (pragmas == null) ? List.of() : List.copyOf(pragmas);
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + maxWaitMillis + " ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            Physical p = takeValidIdle();
+            if (p == null) p = open();
+            return wrap(p);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getInUseCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Physical p;
+        while ((p = idle.pollFirst()) != null) {
+            discard(p);
+        }
+    }
+
+    private Physical takeValidIdle() {
+        Physical p;
+        // most recently returned first: it is the one most likely to still be warm
+        while ((p = idle.pollFirst()) != null) {
+            if (isUsable(p.raw)) return p;
+            discard(p);
+        }
+        return null;
+    }
+
+    private Physical open() throws SQLException {
+        Connection c = DriverManager.getConnection(url);
+        try (Statement st = c.createStatement()) {
+            for (String pragma : pragmas) {
+                st.execute(pragma);
+            }
+        } catch (SQLException e) {
+            closeQuietly(c);
+            throw e;
+        }
+        return new Physical(c, new StatementCache(c, statementCacheSize, statementCacheHits, statementCacheMisses));
+    }
+
+    private void release(Physical p) {
+        boolean reusable = !closed && resetState(p.raw);
+        if (reusable) {
+            idle.offerFirst(p);
+        } else {
+            discard(p);
+        }
+        permits.release();
+    }
+
+    private static void discard(Physical p) {
+        p.statements.closeAll();
+        closeQuietly(p.raw);
+    }
+
+    private static boolean resetState(Connection raw) {
+        try {
+            if (raw.isClosed()) return false;
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static boolean isUsable(Connection c) {
+        try {
+            return !c.isClosed() && c.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException ignored) {
+            // nothing useful to do for a connection we are discarding
+        }
+    }
+
+    private Connection wrap(Physical p) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledHandler(p));
+    }
+
+    // Hands the physical connection back to the pool on close() instead of closing it,
+    // and serves prepareStatement(sql[, autoGeneratedKeys]) from the connection's statement cache.
+    private final class PooledHandler implements InvocationHandler {
+        private final Physical physical;
+        private final Connection raw;
+        private boolean returned;
+
+        private PooledHandler(Physical physical) {
+            this.physical = physical;
+            this.raw = physical.raw;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                if (!returned) {
+                    returned = true;
+                    release(physical);
+                }
+                return null;
+            }
+            if ("isClosed".equals(name) && method.getParameterCount() == 0) {
+                return returned || raw.isClosed();
+            }
+            if ("equals".equals(name) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(name) && method.getParameterCount() == 0) {
+                return "Pooled[" + raw + "]";
+            }
+            if (returned) throw new SQLException("Connection already returned to the pool");
+            if ("prepareStatement".equals(name)) {
+                Class<?>[] types = method.getParameterTypes();
+                if (types.length == 1) {
+                    return physical.statements.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (types.length == 2 && types[1] == int.class) {
+                    return physical.statements.prepare((String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -1,69 +1,118 @@
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
-public final class Database {
-    private final String url;
+public final class Database implements AutoCloseable {
+    public static final int DEFAULT_READ_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 5_000;
+    // The writer only spins briefly inside SQLite on a lock; waiting longer is SqliteRetry's job
+    // (jittered backoff up to its deadline), so the two never stack up.
+    static final int WRITER_BUSY_TIMEOUT_MILLIS = 10;
+
+    // Performance profile applied to every physical connection (readers and the writer).
+    private static final List<String> CONNECTION_PRAGMAS = List.of(
+            "PRAGMA foreign_keys = ON",
+            "PRAGMA busy_timeout = 5000",
+            "PRAGMA synchronous = NORMAL",
+            "PRAGMA cache_size = -16000",     // ~16 MB page cache per connection
+            "PRAGMA mmap_size = 268435456",   // 256 MB memory-mapped reads
+            "PRAGMA temp_store = MEMORY"
+    );
+
+    private final ConnectionPool writer;
+    private final ConnectionPool readers;
+    private final SchemaMigrator migrator = new SchemaMigrator(this, Migrations.all(), Migrations.background());
+    private final SqliteRetry retry = new SqliteRetry();
 
     public Database(String dbFilePath) {
+        this(dbFilePath, DEFAULT_READ_POOL_SIZE, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    public Database(String dbFilePath, int readPoolSize, long maxWaitMillis) {
+        this(dbFilePath, readPoolSize, maxWaitMillis, true);
+    }
+
+    // enforceForeignKeys = false is for files that hold books/loans without the users they refer to
+    // (see ShardedLibraryRepository); users are then checked by the caller.
+    public Database(String dbFilePath, int readPoolSize, long maxWaitMillis, boolean enforceForeignKeys) {
         if (dbFilePath == null || dbFilePath.isBlank()) throw new IllegalArgumentException("dbFilePath required");
-        this.url = "jdbc:sqlite:" + dbFilePath;
+        String url = "jdbc:sqlite:" + dbFilePath;
+        List<String> pragmas = new ArrayList<>(CONNECTION_PRAGMAS);
+        if (!enforceForeignKeys) pragmas.replaceAll(p -> p.startsWith("PRAGMA foreign_keys") ? "PRAGMA foreign_keys = OFF" : p);
+        List<String> readerPragmas = new ArrayList<>(pragmas);
+        readerPragmas.add("PRAGMA query_only = ON");
+        pragmas.replaceAll(p -> p.startsWith("PRAGMA busy_timeout") ? "PRAGMA busy_timeout = " + WRITER_BUSY_TIMEOUT_MILLIS : p);
+        // SQLite allows one writer at a time, so a single writer connection avoids lock ping-pong;
+        // in WAL mode the readers never block it.
+        this.writer = new ConnectionPool(url, 1, maxWaitMillis, pragmas);
+        this.readers = new ConnectionPool(url, readPoolSize, maxWaitMillis, readerPragmas);
     }
 
+    // Writer connection. Callers close it (try-with-resources) to hand it back to the pool.
     public Connection connect() throws SQLException {
-        Connection c = DriverManager.getConnection(url);
-        try (Statement st = c.createStatement()) {
-            st.execute("PRAGMA foreign_keys = ON");
-        }
-        return c;
+        return writer.borrow();
+    }
+
+    // Read-only connection from the reader pool; use for queries that never write.
+    public Connection connectReadOnly() throws SQLException {
+        return readers.borrow();
+    }
+
+    // Shared retry policy (and counters) for write transactions on this database.
+    public SqliteRetry retry() {
+        return retry;
+    }
+
+    // True while a writer transaction (borrow/return batch, import chunk, ...) holds the writer connection.
+    public boolean isWriterBusy() {
+        return writer.getInUseCount() > 0;
     }
 
+    public long getStatementCacheHits() {
+        return writer.getStatementCacheHits() + readers.getStatementCacheHits();
+    }
+
+    public long getStatementCacheMisses() {
+        return writer.getStatementCacheMisses() + readers.getStatementCacheMisses();
+    }
+
+    @Override
+    public void close() {
+        readers.close();
+        writer.close();
+    }
+
+    // Switches to WAL and brings the schema up to the latest version (see Migrations).
     public void init() {
-        try (Connection c = connect(); Statement st = c.createStatement()) {
-            st.execute(
-                    "CREATE TABLE IF NOT EXISTS users ("
-                            + " username TEXT PRIMARY KEY COLLATE NOCASE,"
-                            + " password_hash TEXT NOT NULL,"
-                            + " role TEXT NOT NULL"
-                            + ")"
-            );
-
-            st.execute(
-                    "CREATE TABLE IF NOT EXISTS books ("
-                            + " id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                            + " title TEXT NOT NULL,"
-                            + " author TEXT NOT NULL,"
-                            + " total_copies INTEGER NOT NULL,"
-                            + " available_copies INTEGER NOT NULL,"
-                            + " is_deleted INTEGER NOT NULL DEFAULT 0"
-                            + ")"
-            );
-
-            st.execute(
-                    "CREATE TABLE IF NOT EXISTS loans ("
-                            + " id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                            + " username TEXT NOT NULL COLLATE NOCASE,"
-                            + " book_id INTEGER NOT NULL,"
-                            + " loan_date TEXT NOT NULL,"
-                            + " return_date TEXT NULL,"
-                            + " FOREIGN KEY(username) REFERENCES users(username) ON DELETE CASCADE,"
-                            + " FOREIGN KEY(book_id) REFERENCES books(id) ON DELETE RESTRICT"
-                            + ")"
-            );
-
-            st.execute(
-                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_loans_active_unique "
-                            + "ON loans(username, book_id) "
-                            + "WHERE return_date IS NULL"
-            );
-
-            st.execute("CREATE INDEX IF NOT EXISTS idx_loans_user ON loans(username)");
-            st.execute("CREATE INDEX IF NOT EXISTS idx_loans_book ON loans(book_id)");
-            st.execute("CREATE INDEX IF NOT EXISTS idx_books_deleted ON books(is_deleted)");
+        try {
+            retry.run(() -> {
+                try (Connection c = connect(); Statement st = c.createStatement()) {
+                    // Only takes effect on a new, empty file; lets MaintenanceScheduler hand free pages back in slices.
+                    st.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                    // WAL is persistent in the DB file: readers keep reading while a borrow/return commits.
+                    return st.execute("PRAGMA journal_mode = WAL");
+                }
+            });
         } catch (SQLException e) {
             throw new RuntimeException("DB init failed: " + e.getMessage(), e);
         }
+        try {
+            // each migration is its own transaction and migrate() resumes from user_version
+            retry.run(migrator::migrate);
+        } catch (SQLException e) {
+            throw new RuntimeException("DB init failed: " + e.getMessage(), e);
+        }
+    }
+
+    // Runs batched backfills/index builds on a daemon thread while the app keeps serving.
+    public void startBackgroundMigrations() {
+        migrator.startBackground();
+    }
+
+    public SchemaMigrator migrator() {
+        return migrator;
     }
 }
 
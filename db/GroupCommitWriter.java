@@ -0,0 +1,185 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Single writer thread that runs queued write operations in shared transactions ("group commit"):
+// one COMMIT (and one fsync) covers up to maxBatchSize operations or maxBatchDelayMillis of arrivals.
+// Every operation runs inside its own SAVEPOINT, so a failed borrow/return is rolled back on its own
+// exactly as it was when it had a private transaction.
+public final class GroupCommitWriter implements AutoCloseable {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    public static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 2;
+
+    public interface Operation<T> {
+        T apply(Connection c) throws SQLException;
+    }
+
+    private static final class Task<T> {
+        private final Operation<T> op;
+        private final T failureResult;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private RuntimeException error; // thrown by op; rolled back to its savepoint, reported to this caller only
+
+        private Task(Operation<T> op, T failureResult) {
+            this.op = op;
+            this.failureResult = failureResult;
+        }
+
+        // Runs inside the open batch transaction.
+        private void run(Connection c) throws SQLException {
+            result = null;
+            error = null; // the batch may be re-run after contention
+            Savepoint sp = c.setSavepoint();
+            try {
+                T r = op.apply(c);
+                if (Objects.equals(r, failureResult)) {
+                    c.rollback(sp);
+                    result = failureResult;
+                    return;
+                }
+                c.releaseSavepoint(sp);
+                result = r;
+            } catch (SQLException e) {
+                // lock contention fails the whole batch so it can be retried; constraint violations etc.
+                // fail this operation only
+                if (SqliteRetry.isContention(e)) throw e;
+                c.rollback(sp);
+                result = failureResult;
+            } catch (RuntimeException e) {
+                c.rollback(sp);
+                error = e;
+            }
+        }
+    }
+
+    private final Database db;
+    private final int maxBatchSize;
+    private final long maxBatchDelayMillis;
+    private final BlockingQueue<Task<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public GroupCommitWriter(Database db) {
+        this(db, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY_MILLIS);
+    }
+
+    public GroupCommitWriter(Database db, int maxBatchSize, long maxBatchDelayMillis) {
+        if (db == null) throw new IllegalArgumentException("db required");
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be > 0");
+        if (maxBatchDelayMillis < 0) throw new IllegalArgumentException("maxBatchDelayMillis must be >= 0");
+        this.db = db;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayMillis = maxBatchDelayMillis;
+        this.thread = new Thread(this::runLoop, "library-group-commit");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // failureResult is what the caller receives when the operation fails or asks for a rollback
+    // by returning failureResult itself (e.g. null for a borrow, false for a return).
+    public <T> CompletableFuture<T> submit(Operation<T> op, T failureResult) {
+        if (op == null) throw new IllegalArgumentException("op required");
+        Task<T> task = new Task<>(op, failureResult);
+        if (closed) {
+            task.future.completeExceptionally(new IllegalStateException("writer is closed"));
+            return task.future;
+        }
+        queue.add(task);
+        // close() may have drained the queue between the check above and the add
+        if (closed && queue.remove(task)) {
+            task.future.completeExceptionally(new IllegalStateException("writer is closed"));
+        }
+        return task.future;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Task<?> t;
+        while ((t = queue.poll()) != null) {
+            t.future.completeExceptionally(new IllegalStateException("writer is closed"));
+        }
+    }
+
+    private void runLoop() {
+        List<Task<?>> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Task<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                if (batch.isEmpty()) continue;
+                // closing: still run what was already dequeued
+            }
+            runBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void runBatch(List<Task<?>> batch) {
+        try {
+            // SQLITE_BUSY rolls the batch back; it is re-run with backoff until the retry deadline
+            db.retry().run(() -> {
+                commitBatch(batch);
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            for (Task<?> t : batch) {
+                t.future.completeExceptionally(e instanceof RuntimeException ? e : new RuntimeException(e));
+            }
+            return;
+        }
+        for (Task<?> t : batch) {
+            complete(t);
+        }
+    }
+
+    private void commitBatch(List<Task<?>> batch) throws SQLException {
+        try (Connection c = db.connect()) {
+            c.setAutoCommit(false);
+            try {
+                for (Task<?> t : batch) {
+                    t.run(c);
+                }
+                c.commit();
+            } catch (SQLException | RuntimeException e) {
+                // nothing of a failed batch may be committed by the setAutoCommit(true) below
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static <T> void complete(Task<T> t) {
+        if (t.error != null) {
+            t.future.completeExceptionally(t.error);
+            return;
+        }
+        t.future.complete(t.result);
+    }
+}
@@ -0,0 +1,628 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// Write path for checkout bursts: borrowBook/returnBook are decided against in-memory state and
+// acknowledged as soon as the event is in the memory-mapped LoanJournal. A background applier folds
+// journaled events into SQLite (loans + journal_state.applied_seq in one transaction); on startup any
+// event past applied_seq is replayed first, then the in-memory state is rebuilt from the tables.
+//
+// Availability (findBook, listBooks, searchBooks, book pages/exports) comes from the in-memory state.
+// Loan reads merge the still pending events into what the tables return, so they include the caller's
+// own borrows and returns without doing apply work on the calling thread. Book changes (add/remove) go
+// straight to SQLite.
+// Only a constraint violation (e.g. the user was deleted in between) rejects a single event; any other
+// error (busy, I/O, disk full) rolls the whole batch back, leaves applied_seq alone and is retried with backoff.
+public final class JournaledLibraryRepository implements LibraryRepository, AutoCloseable {
+    public static final int DEFAULT_JOURNAL_CAPACITY = 8 * 1024 * 1024;
+    public static final long DEFAULT_APPLY_INTERVAL_MILLIS = 20;
+    private static final int APPLY_BATCH_SIZE = 1_000;
+    private static final long MAX_APPLY_BACKOFF_MILLIS = 5_000;
+    private static final int DELETED = -1;
+
+    private static final class BookSlot {
+        private final int totalCopies;
+        private final AtomicInteger available; // DELETED once removed
+
+        private BookSlot(int totalCopies, int available) {
+            this.totalCopies = totalCopies;
+            this.available = new AtomicInteger(available);
+        }
+    }
+
+    private final Database db;
+    private final SqliteLibraryRepository tables;
+    private final UserStore users;
+    private final LoanJournal journal;
+    private final long applyIntervalMillis;
+
+    // guards the journal, pending, activeLoans and id/seq counters; availability is read without it
+    private final Object lock = new Object();
+    // serializes appliers (background thread, full journal, removeBook, close)
+    private final Object applyLock = new Object();
+    private final Map<Integer, BookSlot> books = new ConcurrentHashMap<>();
+    private final Map<String, Integer> activeLoans = new HashMap<>(); // "user\nbookId" -> loan id
+    private final ArrayDeque<LoanJournal.Entry> pending = new ArrayDeque<>();
+    private long nextSeq;
+    private int nextLoanId;
+
+    private final LongAdder appliedEvents = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final Thread applier;
+    private volatile boolean closed;
+
+    public JournaledLibraryRepository(Database db, UserStore users, Path journalFile) {
+        this(db, users, journalFile, DEFAULT_JOURNAL_CAPACITY, DEFAULT_APPLY_INTERVAL_MILLIS);
+    }
+
+    public JournaledLibraryRepository(Database db, UserStore users, Path journalFile, int journalCapacity, long applyIntervalMillis) {
+        if (db == null) throw new IllegalArgumentException("db required");
+        if (journalFile == null) throw new IllegalArgumentException("journalFile required");
+        if (applyIntervalMillis <= 0) throw new IllegalArgumentException("applyIntervalMillis must be > 0");
+        this.db = db;
+        this.tables = new SqliteLibraryRepository(db);
+        this.users = users;
+        this.applyIntervalMillis = applyIntervalMillis;
+        try {
+            this.journal = LoanJournal.open(journalFile, journalCapacity);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        long appliedSeq = recover();
+        loadState(appliedSeq);
+
+        this.applier = new Thread(this::runApplier, "library-journal-applier");
+        this.applier.setDaemon(true);
+        this.applier.start();
+    }
+
+    public long getAppliedEvents() {
+        return appliedEvents.sum();
+    }
+
+    // events SQLite rejected when applied (e.g. the user was deleted in between); skipped
+    public long getFailedEvents() {
+        return failedEvents.sum();
+    }
+
+    public int getPendingEvents() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    // ---- startup ----
+
+    // Replays journal events newer than journal_state.applied_seq, then empties the journal.
+    private long recover() {
+        List<LoanJournal.Entry> entries = journal.readAll();
+        long appliedSeq = readAppliedSeq();
+        List<LoanJournal.Entry> unapplied = new ArrayList<>();
+        for (LoanJournal.Entry e : entries) {
+            if (e.seq > appliedSeq) unapplied.add(e);
+        }
+        if (!unapplied.isEmpty()) {
+            applyBatch(unapplied);
+            appliedSeq = unapplied.get(unapplied.size() - 1).seq;
+        }
+        if (!entries.isEmpty()) {
+            appliedSeq = Math.max(appliedSeq, entries.get(entries.size() - 1).seq);
+        }
+        journal.reset();
+        return appliedSeq;
+    }
+
+    private long readAppliedSeq() {
+        try (Connection c = db.connect();
+             PreparedStatement ps = c.prepareStatement("SELECT applied_seq FROM journal_state WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void loadState(long appliedSeq) {
+        try (Connection c = db.connect(); Statement st = c.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT id, total_copies, available_copies, is_deleted FROM books")) {
+                while (rs.next()) {
+                    int available = (rs.getInt("is_deleted") == 1) ? DELETED : rs.getInt("available_copies");
+                    books.put(rs.getInt("id"), new BookSlot(rs.getInt("total_copies"), available));
+                }
+            }
+            try (ResultSet rs = st.executeQuery("SELECT id, username, book_id FROM loans WHERE return_date IS NULL")) {
+                while (rs.next()) {
+                    activeLoans.put(loanKey(rs.getString("username"), rs.getInt("book_id")), rs.getInt("id"));
+                }
+            }
+            // ids are handed out here now, so start above anything the tables have ever used
+            try (ResultSet rs = st.executeQuery(
+                    "SELECT MAX(COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'loans'), 0), "
+                            + "COALESCE((SELECT MAX(id) FROM loans), 0), "
+                            + "COALESCE((SELECT MAX(id) FROM loans_archive), 0))")) {
+                nextLoanId = rs.next() ? rs.getInt(1) + 1 : 1;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        nextSeq = appliedSeq + 1;
+    }
+
+    private static String loanKey(String username, int bookId) {
+        return username.trim().toLowerCase() + "\n" + bookId;
+    }
+
+    // ---- journaled writes ----
+
+    @Override
+    public Loan borrowBook(String username, int bookId) {
+        if (username == null || username.isBlank()) throw new IllegalArgumentException("username required");
+        if (bookId <= 0) return null;
+        String u = username.trim();
+        // the loans.username foreign key is only checked when the event is applied, so check up front
+        if (users != null && users.findByUsername(u) == null) return null;
+        LocalDate today = LocalDate.now();
+
+        while (true) {
+            synchronized (lock) {
+                BookSlot b = books.get(bookId);
+                if (b == null || b.available.get() <= 0) return null;
+                String key = loanKey(u, bookId);
+                if (activeLoans.containsKey(key)) return null;
+
+                LoanJournal.Entry e = new LoanJournal.Entry(nextSeq, LoanJournal.BORROW, nextLoanId, bookId, today.toEpochDay(), u);
+                if (journal.append(e)) {
+                    nextSeq++;
+                    nextLoanId++;
+                    b.available.decrementAndGet();
+                    activeLoans.put(key, e.loanId);
+                    pending.addLast(e);
+                    return new Loan(e.loanId, u, bookId, today);
+                }
+            }
+            makeRoom();
+        }
+    }
+
+    @Override
+    public boolean returnBook(String username, int bookId) {
+        if (username == null || username.isBlank()) return false;
+        if (bookId <= 0) return false;
+        String u = username.trim();
+        LocalDate today = LocalDate.now();
+
+        while (true) {
+            synchronized (lock) {
+                String key = loanKey(u, bookId);
+                Integer loanId = activeLoans.get(key);
+                if (loanId == null) return false;
+
+                LoanJournal.Entry e = new LoanJournal.Entry(nextSeq, LoanJournal.RETURN, loanId, bookId, today.toEpochDay(), u);
+                if (journal.append(e)) {
+                    nextSeq++;
+                    activeLoans.remove(key);
+                    BookSlot b = books.get(bookId);
+                    if (b != null) putCopyBack(b);
+                    pending.addLast(e);
+                    return true;
+                }
+            }
+            makeRoom();
+        }
+    }
+
+    private static void putCopyBack(BookSlot b) {
+        while (true) {
+            int a = b.available.get();
+            if (a < 0 || a >= b.totalCopies) return;
+            if (b.available.compareAndSet(a, a + 1)) return;
+        }
+    }
+
+    // Journal full: apply what is pending so it can be emptied, then let the caller retry.
+    private void makeRoom() {
+        if (closed) throw new IllegalStateException("repository is closed");
+        applyPending();
+    }
+
+    // ---- applier ----
+
+    private void runApplier() {
+        long delay = applyIntervalMillis;
+        while (!closed) {
+            try {
+                Thread.sleep(delay);
+                applyPending();
+                delay = applyIntervalMillis;
+            } catch (InterruptedException e) {
+                if (closed) return;
+            } catch (RuntimeException e) {
+                // database busy, down or full: events stay pending (and journaled); back off and try again
+                delay = Math.min(MAX_APPLY_BACKOFF_MILLIS, delay * 2);
+                System.err.println("Loan journal apply failed, retrying in " + delay + " ms: " + e.getMessage());
+            }
+        }
+    }
+
+    // Applies everything pending in batches, then empties the journal if nothing new arrived.
+    private void applyPending() {
+        synchronized (applyLock) {
+            while (true) {
+                List<LoanJournal.Entry> batch = new ArrayList<>();
+                synchronized (lock) {
+                    if (pending.isEmpty()) {
+                        if (!journal.isEmpty()) journal.reset();
+                        return;
+                    }
+                    for (LoanJournal.Entry e : pending) {
+                        batch.add(e);
+                        if (batch.size() == APPLY_BATCH_SIZE) break;
+                    }
+                }
+                applyBatch(batch);
+                synchronized (lock) {
+                    for (int i = 0; i < batch.size(); i++) pending.pollFirst();
+                }
+            }
+        }
+    }
+
+    // One transaction for the batch plus the applied_seq checkpoint; each event in its own savepoint.
+    // Throws (with nothing applied) unless every event was either applied or refused by a constraint.
+    private void applyBatch(List<LoanJournal.Entry> batch) {
+        List<LoanJournal.Entry> failed;
+        try {
+            failed = db.retry().run(() -> applyInTransaction(batch));
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        appliedEvents.add(batch.size() - failed.size());
+        for (LoanJournal.Entry e : failed) onApplyFailed(e);
+    }
+
+    private List<LoanJournal.Entry> applyInTransaction(List<LoanJournal.Entry> batch) throws SQLException {
+        List<LoanJournal.Entry> failed = new ArrayList<>();
+        try (Connection c = db.connect()) {
+            c.setAutoCommit(false);
+            try {
+                for (LoanJournal.Entry e : batch) {
+                    Savepoint sp = c.setSavepoint();
+                    try {
+                        applyOne(c, e);
+                        c.releaseSavepoint(sp);
+                    } catch (SQLException ex) {
+                        // only a refused event is skipped; anything else fails the whole batch
+                        if (!SqliteRetry.isConstraintViolation(ex)) throw ex;
+                        c.rollback(sp);
+                        failed.add(e);
+                    }
+                }
+                try (PreparedStatement ps = c.prepareStatement("UPDATE journal_state SET applied_seq = ? WHERE id = 1")) {
+                    ps.setLong(1, batch.get(batch.size() - 1).seq);
+                    ps.executeUpdate();
+                }
+                c.commit();
+                return failed;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    // The inventory triggers keep books.available_copies in step, as with the direct path.
+    private static void applyOne(Connection c, LoanJournal.Entry e) throws SQLException {
+        if (e.type == LoanJournal.BORROW) {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO loans(id, username, book_id, loan_date, return_date) VALUES(?,?,?,?,NULL)")) {
+                ps.setInt(1, e.loanId);
+                ps.setString(2, e.username);
+                ps.setInt(3, e.bookId);
+                ps.setLong(4, e.epochDay);
+                ps.executeUpdate();
+            }
+        } else {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "UPDATE loans SET return_date = ? WHERE id = ? AND return_date IS NULL")) {
+                ps.setLong(1, e.epochDay);
+                ps.setInt(2, e.loanId);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    // A borrow SQLite refused never happened: give the copy back in memory too.
+    private void onApplyFailed(LoanJournal.Entry e) {
+        failedEvents.increment();
+        if (e.type != LoanJournal.BORROW) return;
+        synchronized (lock) {
+            String key = loanKey(e.username, e.bookId);
+            Integer active = activeLoans.get(key);
+            if (active != null && active == e.loanId) {
+                activeLoans.remove(key);
+                BookSlot b = books.get(e.bookId);
+                if (b != null) putCopyBack(b);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        applier.interrupt();
+        try {
+            applier.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            applyPending();
+        } finally {
+            tables.close();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // ---- books: SQLite rows, availability from memory ----
+
+    @Override
+    public Book addBook(String title, String author, int copies) {
+        Book b = tables.addBook(title, author, copies);
+        books.put(b.getId(), new BookSlot(b.getTotalCopies(), b.getAvailableCopies()));
+        return b;
+    }
+
+    @Override
+    public int addBooks(Iterable<BookDraft> drafts) {
+        int added = tables.addBooks(drafts);
+        // ids come from SQLite; pick up whatever is new
+        try (Connection c = db.connect();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT id, total_copies, available_copies FROM books WHERE is_deleted = 0")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    books.putIfAbsent(rs.getInt(1), new BookSlot(rs.getInt(2), rs.getInt(3)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean removeBook(int bookId) {
+        if (bookId <= 0) return false;
+        BookSlot b = books.get(bookId);
+        if (b == null) return false;
+        synchronized (lock) {
+            // all copies on the shelf = no active loan, journaled or not; no borrow can start after this
+            if (!b.available.compareAndSet(b.totalCopies, DELETED)) return false;
+        }
+        applyPending(); // returns still in the journal would look like active loans to SQLite
+        if (tables.removeBook(bookId)) return true;
+        b.available.compareAndSet(DELETED, b.totalCopies);
+        return false;
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        return withLiveAvailability(tables.listBooks());
+    }
+
+    @Override
+    public List<Book> searchBooks(String query) {
+        return withLiveAvailability(tables.searchBooks(query));
+    }
+
+    @Override
+    public Book findBook(int bookId) {
+        return withLiveAvailability(tables.findBook(bookId));
+    }
+
+    @Override
+    public Page<Book> listBooksPage(BookSort sort, String cursor, int limit) {
+        Page<Book> page = tables.listBooksPage(sort, cursor, limit);
+        return new Page<>(withLiveAvailability(page.getItems()), page.getNextCursor());
+    }
+
+    @Override
+    public void exportBooks(RowVisitor<Book> visitor) throws IOException {
+        if (visitor == null) throw new IllegalArgumentException("visitor required");
+        tables.exportBooks(b -> visitor.visit(withLiveAvailability(b)));
+    }
+
+    @Override
+    public boolean hasAnyBooks() {
+        return tables.hasAnyBooks();
+    }
+
+    private Book withLiveAvailability(Book b) {
+        if (b == null) return null;
+        BookSlot slot = books.get(b.getId());
+        if (slot == null) return b;
+        int a = slot.available.get();
+        if (a == DELETED || a == b.getAvailableCopies()) return b;
+        return new Book(b.getId(), b.getTitle(), b.getAuthor(), b.getTotalCopies(), a);
+    }
+
+    private List<Book> withLiveAvailability(List<Book> list) {
+        List<Book> out = new ArrayList<>(list.size());
+        for (Book b : list) out.add(withLiveAvailability(b));
+        return out;
+    }
+
+    // ---- loans: read the tables, then merge in the pending events ----
+
+    @Override
+    public List<Loan> listLoansForUser(String username) {
+        List<LoanJournal.Entry> events = pendingSnapshot();
+        List<Loan> rows = tables.listLoansForUser(username);
+        if (username == null || username.isBlank()) return rows;
+        String u = username.trim();
+        return overlay(rows, events, l -> l.getUsername().equalsIgnoreCase(u));
+    }
+
+    @Override
+    public List<Loan> listAllLoans() {
+        List<LoanJournal.Entry> events = pendingSnapshot();
+        return overlay(tables.listAllLoans(), events, l -> true);
+    }
+
+    @Override
+    public List<Loan> listActiveLoans() {
+        List<LoanJournal.Entry> events = pendingSnapshot();
+        return overlay(tables.listActiveLoans(), events, Loan::isActive);
+    }
+
+    @Override
+    public List<Loan> listLoansBetween(LocalDate from, LocalDate to) {
+        List<LoanJournal.Entry> events = pendingSnapshot();
+        List<Loan> out = overlay(tables.listLoansBetween(from, to), events,
+                l -> !l.getLoanDate().isBefore(from) && !l.getLoanDate().isAfter(to));
+        out.sort(BY_LOAN_DATE);
+        return out;
+    }
+
+    @Override
+    public List<Loan> listOverdueLoans(LocalDate dueBefore) {
+        List<LoanJournal.Entry> events = pendingSnapshot();
+        List<Loan> out = overlay(tables.listOverdueLoans(dueBefore), events,
+                l -> l.isActive() && l.getLoanDate().isBefore(dueBefore));
+        out.sort(BY_LOAN_DATE);
+        return out;
+    }
+
+    @Override
+    public Page<Loan> listLoansForUserPage(String username, String cursor, int limit) {
+        List<LoanJournal.Entry> events = pendingSnapshot();
+        Page<Loan> page = tables.listLoansForUserPage(username, cursor, limit);
+        if (username == null || username.isBlank()) return page;
+        String u = username.trim();
+        return overlay(page, events, cursor, limit, l -> l.getUsername().equalsIgnoreCase(u));
+    }
+
+    @Override
+    public Page<Loan> listAllLoansPage(String cursor, int limit) {
+        List<LoanJournal.Entry> events = pendingSnapshot();
+        return overlay(tables.listAllLoansPage(cursor, limit), events, cursor, limit, l -> true);
+    }
+
+    @Override
+    public Page<Loan> listActiveLoansPage(String cursor, int limit) {
+        List<LoanJournal.Entry> events = pendingSnapshot();
+        return overlay(tables.listActiveLoansPage(cursor, limit), events, cursor, limit, Loan::isActive);
+    }
+
+    @Override
+    public void exportAllLoans(RowVisitor<Loan> visitor) throws IOException {
+        if (visitor == null) throw new IllegalArgumentException("visitor required");
+        List<LoanJournal.Entry> events = pendingSnapshot();
+        Map<Integer, LocalDate> returns = pendingReturns(events);
+        int[] maxId = {0};
+        tables.exportAllLoans(l -> {
+            LocalDate r = returns.get(l.getId());
+            if (r != null) l.markReturned(r);
+            maxId[0] = l.getId();
+            visitor.visit(l);
+        });
+        // unapplied borrows have higher ids than anything in the tables (rows are exported by id)
+        for (Loan l : pendingBorrows(events, returns)) {
+            if (l.getId() > maxId[0]) visitor.visit(l);
+        }
+    }
+
+    private static final Comparator<Loan> BY_LOAN_DATE =
+            Comparator.comparing(Loan::getLoanDate).thenComparingInt(Loan::getId);
+
+    // Taken before reading the tables: an event applied in between then shows up in both and is
+    // de-duplicated by loan id, so nothing acknowledged before the read can be missing from it.
+    private List<LoanJournal.Entry> pendingSnapshot() {
+        synchronized (lock) {
+            return new ArrayList<>(pending);
+        }
+    }
+
+    // Pending returns close the matching rows; pending borrows not in the rows are added.
+    // Only loans `include` accepts are kept (e.g. a returned loan drops out of an active list).
+    private static List<Loan> overlay(List<Loan> rows, List<LoanJournal.Entry> events, Predicate<Loan> include) {
+        if (events.isEmpty()) return new ArrayList<>(rows);
+        Map<Integer, LocalDate> returns = pendingReturns(events);
+        Set<Integer> seen = new HashSet<>();
+        List<Loan> out = new ArrayList<>(rows.size());
+        for (Loan l : rows) {
+            seen.add(l.getId());
+            LocalDate r = returns.get(l.getId());
+            if (r != null) l.markReturned(r);
+            if (include.test(l)) out.add(l);
+        }
+        for (Loan l : pendingBorrows(events, returns)) {
+            if (!seen.contains(l.getId()) && include.test(l)) out.add(l);
+        }
+        return out;
+    }
+
+    // Pages are keyed by loan id. Unapplied borrows have the highest ids, so they only belong on the
+    // last page of the tables (and may push it past `limit`, which then gets a next cursor).
+    private static Page<Loan> overlay(Page<Loan> page, List<LoanJournal.Entry> events, String cursor, int limit,
+                                      Predicate<Loan> include) {
+        if (events.isEmpty()) return page;
+        if (page.hasMore()) {
+            Map<Integer, LocalDate> returns = pendingReturns(events);
+            List<Loan> out = new ArrayList<>(page.getItems().size());
+            for (Loan l : page.getItems()) {
+                LocalDate r = returns.get(l.getId());
+                if (r != null) l.markReturned(r);
+                if (include.test(l)) out.add(l);
+            }
+            return new Page<>(out, page.getNextCursor());
+        }
+        int afterId = PageCursor.parse(cursor).getAfterId();
+        List<Loan> out = overlay(page.getItems(), events, l -> l.getId() > afterId && include.test(l));
+        if (out.size() <= limit) return new Page<>(out, null);
+        out = out.subList(0, limit);
+        return new Page<>(out, new PageCursor(null, out.get(limit - 1).getId()).encode());
+    }
+
+    private static Map<Integer, LocalDate> pendingReturns(List<LoanJournal.Entry> events) {
+        Map<Integer, LocalDate> returns = new HashMap<>();
+        for (LoanJournal.Entry e : events) {
+            if (e.type == LoanJournal.RETURN) returns.put(e.loanId, LocalDate.ofEpochDay(e.epochDay));
+        }
+        return returns;
+    }
+
+    private static List<Loan> pendingBorrows(List<LoanJournal.Entry> events, Map<Integer, LocalDate> returns) {
+        List<Loan> out = new ArrayList<>();
+        for (LoanJournal.Entry e : events) {
+            if (e.type != LoanJournal.BORROW) continue;
+            out.add(new Loan(e.loanId, e.username, e.bookId, LocalDate.ofEpochDay(e.epochDay), returns.get(e.loanId)));
+        }
+        return out;
+    }
+}
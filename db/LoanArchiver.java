@@ -0,0 +1,135 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Moves returned loans older than maxAgeDays from the hot loans table into loans_archive.
+// Work is done in small batches, each its own short transaction on the writer connection,
+// with a pause in between so borrow/return commits are never held up for long.
+public final class LoanArchiver implements AutoCloseable {
+    public static final int DEFAULT_MAX_AGE_DAYS = 365;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_PAUSE_MILLIS = 50;
+
+    private final Database db;
+    private final int maxAgeDays;
+    private final int batchSize;
+    private final long pauseMillis;
+    private ScheduledExecutorService scheduler;
+
+    public LoanArchiver(Database db, int maxAgeDays) {
+        this(db, maxAgeDays, DEFAULT_BATCH_SIZE, DEFAULT_PAUSE_MILLIS);
+    }
+
+    public LoanArchiver(Database db, int maxAgeDays, int batchSize, long pauseMillis) {
+        if (db == null) throw new IllegalArgumentException("db required");
+        if (maxAgeDays < 0) throw new IllegalArgumentException("maxAgeDays must be >= 0");
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be > 0");
+        if (pauseMillis < 0) throw new IllegalArgumentException("pauseMillis must be >= 0");
+        this.db = db;
+        this.maxAgeDays = maxAgeDays;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    public synchronized void start(long periodMinutes) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loan-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archiveAll();
+            } catch (RuntimeException e) {
+                System.err.println("Loan archiving failed: " + e.getMessage());
+            }
+        }, 1, periodMinutes, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    // Archives everything that is due, batch by batch; returns the number of loans moved.
+    public long archiveAll() {
+        LocalDate cutoff = LocalDate.now().minusDays(maxAgeDays);
+        long moved = 0;
+        while (true) {
+            int n = archiveBatch(cutoff);
+            moved += n;
+            if (n < batchSize) return moved;
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return moved;
+            }
+        }
+    }
+
+    // One transaction: copy up to batchSize due loans (lowest ids first) and delete them from loans.
+    int archiveBatch(LocalDate cutoff) {
+        long before = cutoff.toEpochDay();
+        try {
+            return db.retry().run(() -> {
+                try (Connection c = db.connect()) {
+                    c.setAutoCommit(false);
+                    try {
+                        int maxId;
+                        int count;
+                        try (PreparedStatement ps = c.prepareStatement(
+                                "SELECT MAX(id), COUNT(*) FROM (" +
+                                        "SELECT id FROM loans WHERE return_date IS NOT NULL AND return_date < ? ORDER BY id LIMIT ?)")) {
+                            ps.setLong(1, before);
+                            ps.setInt(2, batchSize);
+                            try (ResultSet rs = ps.executeQuery()) {
+                                rs.next();
+                                maxId = rs.getInt(1);
+                                count = rs.getInt(2);
+                            }
+                        }
+                        if (count == 0) {
+                            c.rollback();
+                            return 0;
+                        }
+
+                        try (PreparedStatement ps = c.prepareStatement(
+                                "INSERT INTO loans_archive(id, username, book_id, loan_date, return_date) " +
+                                        "SELECT id, username, book_id, loan_date, return_date FROM loans " +
+                                        "WHERE return_date IS NOT NULL AND return_date < ? AND id <= ?")) {
+                            ps.setLong(1, before);
+                            ps.setInt(2, maxId);
+                            ps.executeUpdate();
+                        }
+                        int deleted;
+                        try (PreparedStatement ps = c.prepareStatement(
+                                "DELETE FROM loans WHERE return_date IS NOT NULL AND return_date < ? AND id <= ?")) {
+                            ps.setLong(1, before);
+                            ps.setInt(2, maxId);
+                            deleted = ps.executeUpdate();
+                        }
+                        c.commit();
+                        return deleted;
+                    } catch (SQLException e) {
+                        c.rollback();
+                        throw e;
+                    } finally {
+                        c.setAutoCommit(true);
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
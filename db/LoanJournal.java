@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Append-only borrow/return log in a memory-mapped file. An append is a memory copy; the OS writes the
+// pages back, so events survive a crash of the process (call force() to also survive a power loss).
+//
+// Layout: 16-byte header (magic, version), then records [int length][payload][int crc32(payload)].
+// A record is published by writing its length last, after a zero terminator behind it, so a torn
+// append reads as the end of the journal. Not thread-safe: the owner serializes access.
+final class LoanJournal implements AutoCloseable {
+    static final byte BORROW = 1;
+    static final byte RETURN = 2;
+
+    private static final int MAGIC = 0x4C4A4E4C; // "LJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    // seq, type, loanId, bookId, epochDay, username length
+    private static final int FIXED_PAYLOAD = 8 + 1 + 4 + 4 + 8 + 2;
+
+    static final class Entry {
+        final long seq;
+        final byte type;
+        final int loanId;
+        final int bookId;
+        final long epochDay;
+        final String username;
+
+        Entry(long seq, byte type, int loanId, int bookId, long epochDay, String username) {
+            this.seq = seq;
+            this.type = type;
+            this.loanId = loanId;
+            this.bookId = bookId;
+            this.epochDay = epochDay;
+            this.username = username;
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private final CRC32 crc = new CRC32();
+    private int position = HEADER_SIZE;
+
+    private LoanJournal(FileChannel channel, MappedByteBuffer buf) {
+        this.channel = channel;
+        this.buf = buf;
+    }
+
+    static LoanJournal open(Path file, int capacity) throws IOException {
+        if (capacity < HEADER_SIZE + 64) throw new IllegalArgumentException("capacity too small");
+        FileChannel ch = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = Math.max(ch.size(), capacity);
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            int magic = b.getInt(0);
+            if (magic == 0) {
+                b.putInt(0, MAGIC);
+                b.putInt(4, VERSION);
+                b.putInt(HEADER_SIZE, 0);
+            } else if (magic != MAGIC || b.getInt(4) != VERSION) {
+                throw new IOException("Not a loan journal: " + file);
+            }
+            return new LoanJournal(ch, b);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    // Valid records from the start of the journal; leaves the append position after the last one.
+    List<Entry> readAll() {
+        List<Entry> out = new ArrayList<>();
+        int pos = HEADER_SIZE;
+        long lastSeq = Long.MIN_VALUE;
+        while (pos + 4 <= buf.capacity()) {
+            int len = buf.getInt(pos);
+            if (len < FIXED_PAYLOAD || pos + 4 + len + 4 > buf.capacity()) break;
+            byte[] payload = new byte[len];
+            buf.get(pos + 4, payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != buf.getInt(pos + 4 + len)) break; // torn or stale
+            Entry e = decode(payload);
+            if (e == null || e.seq <= lastSeq) break;
+            out.add(e);
+            lastSeq = e.seq;
+            pos += 4 + len + 4;
+        }
+        position = pos;
+        return out;
+    }
+
+    // false when the journal has no room left; nothing is written then.
+    boolean append(Entry e) {
+        byte[] user = e.username.getBytes(StandardCharsets.UTF_8);
+        int len = FIXED_PAYLOAD + user.length;
+        int end = position + 4 + len + 4;
+        if (end + 4 > buf.capacity()) return false;
+
+        byte[] payload = new byte[len];
+        ByteBuffer p = ByteBuffer.wrap(payload);
+        p.putLong(e.seq).put(e.type).putInt(e.loanId).putInt(e.bookId).putLong(e.epochDay)
+                .putShort((short) user.length).put(user);
+        crc.reset();
+        crc.update(payload);
+
+        buf.put(position + 4, payload);
+        buf.putInt(position + 4 + len, (int) crc.getValue());
+        buf.putInt(end, 0);
+        buf.putInt(position, len); // publish
+        position = end;
+        return true;
+    }
+
+    // Drops every record; only call once they are all applied.
+    void reset() {
+        buf.putInt(HEADER_SIZE, 0);
+        position = HEADER_SIZE;
+    }
+
+    boolean isEmpty() {
+        return position == HEADER_SIZE;
+    }
+
+    void force() {
+        buf.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buf.force();
+        channel.close();
+    }
+
+    private static Entry decode(byte[] payload) {
+        ByteBuffer p = ByteBuffer.wrap(payload);
+        long seq = p.getLong();
+        byte type = p.get();
+        int loanId = p.getInt();
+        int bookId = p.getInt();
+        long epochDay = p.getLong();
+        int userLen = p.getShort() & 0xFFFF;
+        if ((type != BORROW && type != RETURN) || userLen != p.remaining()) return null;
+        byte[] user = new byte[userLen];
+        p.get(user);
+        return new Entry(seq, type, loanId, bookId, epochDay, new String(user, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,221 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps library.db healthy without getting in the way of checkouts:
+//  - PRAGMA wal_checkpoint(PASSIVE): copies WAL frames back into the file, never waits for writers
+//  - PRAGMA incremental_vacuum(N): returns free pages (soft-deleted books, archived loans) N at a time
+//  - PRAGMA optimize with an analysis_limit: refreshes planner statistics where they went stale
+// Each step is one short statement on the writer connection. Steps only start when no writer
+// transaction is running (and, if configured, inside the maintenance window), and vacuum slices are
+// separated by a pause, so a checkout waits at most for one slice. pause()/resume() and
+// setThrottle(...) can be changed at any time.
+public final class MaintenanceScheduler implements AutoCloseable {
+    public static final int DEFAULT_PAGES_PER_SLICE = 256;   // ~1 MB with 4 KB pages
+    public static final long DEFAULT_SLICE_PAUSE_MILLIS = 250;
+    public static final int DEFAULT_MAX_SLICES_PER_RUN = 40;
+    public static final long DEFAULT_OPTIMIZE_INTERVAL_MINUTES = 60;
+    private static final int ANALYSIS_LIMIT = 400; // rows sampled per index by ANALYZE
+
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final Database db;
+    private final LocalTime windowStart; // null = any time of day
+    private final LocalTime windowEnd;
+    private volatile boolean paused;
+    private volatile int pagesPerSlice = DEFAULT_PAGES_PER_SLICE;
+    private volatile long slicePauseMillis = DEFAULT_SLICE_PAUSE_MILLIS;
+    private volatile int maxSlicesPerRun = DEFAULT_MAX_SLICES_PER_RUN;
+    private long lastOptimizeNanos;
+    private boolean optimizedOnce;
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder checkpoints = new LongAdder();
+    private final LongAdder vacuumSlices = new LongAdder();
+    private final LongAdder optimizeRuns = new LongAdder();
+    private final LongAdder skippedBusy = new LongAdder();
+
+    public MaintenanceScheduler(Database db) {
+        this(db, null, null);
+    }
+
+    // Work only starts between windowStart and windowEnd (local time, may wrap past midnight).
+    public MaintenanceScheduler(Database db, LocalTime windowStart, LocalTime windowEnd) {
+        if (db == null) throw new IllegalArgumentException("db required");
+        if ((windowStart == null) != (windowEnd == null)) throw new IllegalArgumentException("window needs start and end");
+        this.db = db;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+    }
+
+    // "01:00-05:00" -> window; blank/null -> any time.
+    public static MaintenanceScheduler withWindow(Database db, String window) {
+        if (window == null || window.isBlank()) return new MaintenanceScheduler(db);
+        String[] parts = window.trim().split("-");
+        if (parts.length != 2) throw new IllegalArgumentException("window must look like 01:00-05:00");
+        return new MaintenanceScheduler(db, LocalTime.parse(parts[0].trim()), LocalTime.parse(parts[1].trim()));
+    }
+
+    public synchronized void start(long periodMinutes) {
+        if (periodMinutes <= 0) throw new IllegalArgumentException("periodMinutes must be > 0");
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-maintenance");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (RuntimeException e) {
+                System.err.println("Database maintenance failed: " + e.getMessage());
+            }
+        }, periodMinutes, periodMinutes, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        paused = false;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    // Smaller slices / longer pauses = gentler; fewer slices per run = less work per period.
+    public void setThrottle(int pagesPerSlice, long slicePauseMillis, int maxSlicesPerRun) {
+        if (pagesPerSlice <= 0) throw new IllegalArgumentException("pagesPerSlice must be > 0");
+        if (slicePauseMillis < 0) throw new IllegalArgumentException("slicePauseMillis must be >= 0");
+        if (maxSlicesPerRun <= 0) throw new IllegalArgumentException("maxSlicesPerRun must be > 0");
+        this.pagesPerSlice = pagesPerSlice;
+        this.slicePauseMillis = slicePauseMillis;
+        this.maxSlicesPerRun = maxSlicesPerRun;
+    }
+
+    public long getCheckpoints() {
+        return checkpoints.sum();
+    }
+
+    public long getVacuumSlices() {
+        return vacuumSlices.sum();
+    }
+
+    public long getOptimizeRuns() {
+        return optimizeRuns.sum();
+    }
+
+    // steps not started because a writer transaction was running
+    public long getSkippedBusy() {
+        return skippedBusy.sum();
+    }
+
+    // One maintenance pass: checkpoint, vacuum slices while pages are free, optimize when due.
+    public synchronized void runOnce() {
+        if (!mayRun()) return;
+        try {
+            checkpoint();
+            vacuumSlices();
+            if (!optimizedOnce || System.nanoTime() - lastOptimizeNanos
+                    >= TimeUnit.MINUTES.toNanos(DEFAULT_OPTIMIZE_INTERVAL_MINUTES)) {
+                if (mayRun()) optimize();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean mayRun() {
+        if (paused || !inWindow(LocalTime.now())) return false;
+        if (db.isWriterBusy()) {
+            skippedBusy.increment();
+            return false;
+        }
+        return true;
+    }
+
+    boolean inWindow(LocalTime now) {
+        if (windowStart == null) return true;
+        if (windowStart.isBefore(windowEnd)) return !now.isBefore(windowStart) && now.isBefore(windowEnd);
+        return !now.isBefore(windowStart) || now.isBefore(windowEnd); // e.g. 23:00-04:00
+    }
+
+    private void checkpoint() throws SQLException {
+        try (Connection c = db.connect(); Statement st = c.createStatement()) {
+            st.execute("PRAGMA wal_checkpoint(PASSIVE)");
+        }
+        checkpoints.increment();
+    }
+
+    private void vacuumSlices() throws SQLException {
+        if (!incrementalVacuumEnabled()) return;
+        for (int i = 0; i < maxSlicesPerRun; i++) {
+            if (!mayRun()) return;
+            try (Connection c = db.connect(); Statement st = c.createStatement()) {
+                if (freePages(st) == 0) return;
+                st.execute("PRAGMA incremental_vacuum(" + pagesPerSlice + ")");
+            }
+            vacuumSlices.increment();
+            if (!sleep(slicePauseMillis)) return;
+        }
+    }
+
+    private void optimize() throws SQLException {
+        try (Connection c = db.connect(); Statement st = c.createStatement()) {
+            // bounds the work ANALYZE does per index, so this stays a short write
+            st.execute("PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+            st.execute("PRAGMA optimize");
+        }
+        optimizeRuns.increment();
+        lastOptimizeNanos = System.nanoTime();
+        optimizedOnce = true;
+    }
+
+    // Files created before auto_vacuum was set need one full VACUUM (offline) before this applies.
+    private boolean incrementalVacuumEnabled() throws SQLException {
+        try (Connection c = db.connectReadOnly(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA auto_vacuum")) {
+            return rs.next() && rs.getInt(1) == AUTO_VACUUM_INCREMENTAL;
+        }
+    }
+
+    private static long freePages(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("PRAGMA freelist_count")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "checkpoints=" + getCheckpoints() + " | vacuumSlices=" + getVacuumSlices()
+                + " | optimizeRuns=" + getOptimizeRuns() + " | skippedBusy=" + getSkippedBusy()
+                + (paused ? " | paused" : "");
+    }
+}
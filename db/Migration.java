@@ -0,0 +1,39 @@
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// One schema version. Applied at startup inside a transaction that also bumps PRAGMA user_version.
+public final class Migration {
+    public interface Step {
+        void apply(Statement st) throws SQLException;
+    }
+
+    private final int version;
+    private final String description;
+    private final Step step;
+
+    public Migration(int version, String description, Step step) {
+        if (version <= 0) throw new IllegalArgumentException("version must be > 0");
+        if (description == null || description.isBlank()) throw new IllegalArgumentException("description required");
+        if (step == null) throw new IllegalArgumentException("step required");
+        this.version = version;
+        this.description = description;
+        this.step = step;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    void apply(Statement st) throws SQLException {
+        step.apply(st);
+    }
+
+    @Override
+    public String toString() {
+        return "v" + version + " (" + description + ")";
+    }
+}
@@ -0,0 +1,297 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// Schema history. Append new versions at the end; never edit a migration that has shipped.
+final class Migrations {
+    private Migrations() {}
+
+    static List<Migration> all() {
+        return List.of(
+                new Migration(1, "baseline schema", Migrations::baseline),
+                new Migration(2, "integer epoch-day loan dates", Migrations::integerLoanDates),
+                new Migration(3, "loan journal checkpoint", Migrations::journalState),
+                new Migration(4, "persistent login sessions", Migrations::sessions),
+                new Migration(5, "store session id hashes", Migrations::sessionIdHashes)
+        );
+    }
+
+    // Long backfills and index builds that run in batches after startup.
+    static List<BackgroundMigration> background() {
+        return List.of(
+                // range queries ("loaned between X and Y") and overdue scans (active loans older than a due date)
+                BackgroundMigration.createIndex("idx_loans_loan_date",
+                        "CREATE INDEX IF NOT EXISTS idx_loans_loan_date ON loans(loan_date)"),
+                BackgroundMigration.createIndex("idx_loans_archive_loan_date",
+                        "CREATE INDEX IF NOT EXISTS idx_loans_archive_loan_date ON loans_archive(loan_date)"),
+                BackgroundMigration.createIndex("idx_loans_overdue",
+                        "CREATE INDEX IF NOT EXISTS idx_loans_overdue ON loans(loan_date) WHERE return_date IS NULL")
+        );
+    }
+
+    // Everything that existed before versioning. Uses IF NOT EXISTS throughout because databases
+    // created by older builds (user_version 0) already contain some or all of it.
+    private static void baseline(Statement st) throws SQLException {
+        st.execute(
+                "CREATE TABLE IF NOT EXISTS users ("
+                        + " username TEXT PRIMARY KEY COLLATE NOCASE,"
+                        + " password_hash TEXT NOT NULL,"
+                        + " role TEXT NOT NULL"
+                        + ")"
+        );
+
+        st.execute(
+                "CREATE TABLE IF NOT EXISTS books ("
+                        + " id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + " title TEXT NOT NULL,"
+                        + " author TEXT NOT NULL,"
+                        + " total_copies INTEGER NOT NULL,"
+                        + " available_copies INTEGER NOT NULL,"
+                        + " is_deleted INTEGER NOT NULL DEFAULT 0"
+                        + ")"
+        );
+
+        st.execute(
+                "CREATE TABLE IF NOT EXISTS loans ("
+                        + " id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + " username TEXT NOT NULL COLLATE NOCASE,"
+                        + " book_id INTEGER NOT NULL,"
+                        + " loan_date TEXT NOT NULL,"
+                        + " return_date TEXT NULL,"
+                        + " FOREIGN KEY(username) REFERENCES users(username) ON DELETE CASCADE,"
+                        + " FOREIGN KEY(book_id) REFERENCES books(id) ON DELETE RESTRICT"
+                        + ")"
+        );
+
+        st.execute(
+                "CREATE UNIQUE INDEX IF NOT EXISTS idx_loans_active_unique "
+                        + "ON loans(username, book_id) "
+                        + "WHERE return_date IS NULL"
+        );
+
+        st.execute("CREATE INDEX IF NOT EXISTS idx_loans_user ON loans(username)");
+        st.execute("CREATE INDEX IF NOT EXISTS idx_loans_book ON loans(book_id)");
+        st.execute("CREATE INDEX IF NOT EXISTS idx_books_deleted ON books(is_deleted)");
+
+        // Keyset pagination: (sort key, id) indexes over live books, and active loans by id.
+        st.execute("CREATE INDEX IF NOT EXISTS idx_books_title_page ON books(title COLLATE NOCASE, id) WHERE is_deleted = 0");
+        st.execute("CREATE INDEX IF NOT EXISTS idx_books_author_page ON books(author COLLATE NOCASE, id) WHERE is_deleted = 0");
+        st.execute("CREATE INDEX IF NOT EXISTS idx_loans_active_page ON loans(id) WHERE return_date IS NULL");
+
+        createLoanInventoryTriggers(st);
+        st.execute(
+                "CREATE TRIGGER IF NOT EXISTS trg_books_available_non_negative "
+                        + "BEFORE UPDATE OF available_copies ON books WHEN NEW.available_copies < 0 "
+                        + "BEGIN "
+                        + " SELECT RAISE(ABORT, 'available_copies cannot be negative'); "
+                        + "END"
+        );
+
+        createSearchIndex(st);
+
+        // Cold storage for returned loans (see LoanArchiver); ids are kept from the loans table.
+        st.execute(
+                "CREATE TABLE IF NOT EXISTS loans_archive ("
+                        + " id INTEGER PRIMARY KEY,"
+                        + " username TEXT NOT NULL COLLATE NOCASE,"
+                        + " book_id INTEGER NOT NULL,"
+                        + " loan_date TEXT NOT NULL,"
+                        + " return_date TEXT NOT NULL,"
+                        + " FOREIGN KEY(username) REFERENCES users(username) ON DELETE CASCADE,"
+                        + " FOREIGN KEY(book_id) REFERENCES books(id) ON DELETE RESTRICT"
+                        + ")"
+        );
+        st.execute("CREATE INDEX IF NOT EXISTS idx_loans_archive_user ON loans_archive(username)");
+        st.execute("CREATE INDEX IF NOT EXISTS idx_loans_returned ON loans(return_date) WHERE return_date IS NOT NULL");
+        createLoansAllView(st);
+    }
+
+    // loan_date/return_date become INTEGER days since 1970-01-01 (LocalDate.toEpochDay): no string
+    // parsing when mapping rows, and date ranges compare as plain integers through an index.
+    // SQLite cannot change a column type in place, so both loan tables are rebuilt. The copy stays in
+    // this transaction: the triggers, the view and the unique active-loan index must never see a
+    // half-converted table, and borrow/return write to it as soon as startup finishes.
+    private static void integerLoanDates(Statement st) throws SQLException {
+        // the view and triggers reference loans and would block the rename below
+        st.execute("DROP VIEW IF EXISTS loans_all");
+        st.execute("DROP TRIGGER IF EXISTS trg_loans_borrow_inventory");
+        st.execute("DROP TRIGGER IF EXISTS trg_loans_return_inventory");
+
+        // ids of archived loans must never be handed out again, so keep the AUTOINCREMENT high-water mark
+        long seq = 0;
+        try (ResultSet rs = st.executeQuery("SELECT seq FROM sqlite_sequence WHERE name = 'loans'")) {
+            if (rs.next()) seq = rs.getLong(1);
+        }
+
+        st.execute(
+                "CREATE TABLE loans_new ("
+                        + " id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + " username TEXT NOT NULL COLLATE NOCASE,"
+                        + " book_id INTEGER NOT NULL,"
+                        + " loan_date INTEGER NOT NULL,"
+                        + " return_date INTEGER NULL,"
+                        + " FOREIGN KEY(username) REFERENCES users(username) ON DELETE CASCADE,"
+                        + " FOREIGN KEY(book_id) REFERENCES books(id) ON DELETE RESTRICT"
+                        + ")"
+        );
+        st.execute(
+                "INSERT INTO loans_new(id, username, book_id, loan_date, return_date) "
+                        + "SELECT id, username, book_id, " + epochDay("loan_date") + ", " + epochDay("return_date") + " "
+                        + "FROM loans"
+        );
+        st.execute("DROP TABLE loans");
+        st.execute("ALTER TABLE loans_new RENAME TO loans");
+        st.execute("DELETE FROM sqlite_sequence WHERE name = 'loans'");
+        st.execute(
+                "INSERT INTO sqlite_sequence(name, seq) SELECT 'loans', MAX(" + seq + ", "
+                        + "(SELECT COALESCE(MAX(id), 0) FROM loans), "
+                        + "(SELECT COALESCE(MAX(id), 0) FROM loans_archive))"
+        );
+
+        st.execute(
+                "CREATE TABLE loans_archive_new ("
+                        + " id INTEGER PRIMARY KEY,"
+                        + " username TEXT NOT NULL COLLATE NOCASE,"
+                        + " book_id INTEGER NOT NULL,"
+                        + " loan_date INTEGER NOT NULL,"
+                        + " return_date INTEGER NOT NULL,"
+                        + " FOREIGN KEY(username) REFERENCES users(username) ON DELETE CASCADE,"
+                        + " FOREIGN KEY(book_id) REFERENCES books(id) ON DELETE RESTRICT"
+                        + ")"
+        );
+        st.execute(
+                "INSERT INTO loans_archive_new(id, username, book_id, loan_date, return_date) "
+                        + "SELECT id, username, book_id, " + epochDay("loan_date") + ", " + epochDay("return_date") + " "
+                        + "FROM loans_archive"
+        );
+        st.execute("DROP TABLE loans_archive");
+        st.execute("ALTER TABLE loans_archive_new RENAME TO loans_archive");
+
+        // indexes went away with the old tables
+        st.execute(
+                "CREATE UNIQUE INDEX idx_loans_active_unique "
+                        + "ON loans(username, book_id) "
+                        + "WHERE return_date IS NULL"
+        );
+        st.execute("CREATE INDEX idx_loans_user ON loans(username)");
+        st.execute("CREATE INDEX idx_loans_book ON loans(book_id)");
+        st.execute("CREATE INDEX idx_loans_active_page ON loans(id) WHERE return_date IS NULL");
+        st.execute("CREATE INDEX idx_loans_returned ON loans(return_date) WHERE return_date IS NOT NULL");
+        st.execute("CREATE INDEX idx_loans_archive_user ON loans_archive(username)");
+        // the loan_date indexes are built afterwards by background() so startup doesn't wait for them
+
+        createLoanInventoryTriggers(st);
+        createLoansAllView(st);
+    }
+
+    // Highest loan journal sequence folded into the tables (see JournaledLibraryRepository).
+    // Updated in the same transaction as the loans it covers, so replay never applies an event twice.
+    private static void journalState(Statement st) throws SQLException {
+        st.execute(
+                "CREATE TABLE IF NOT EXISTS journal_state ("
+                        + " id INTEGER PRIMARY KEY CHECK (id = 1),"
+                        + " applied_seq INTEGER NOT NULL"
+                        + ")"
+        );
+        st.execute("INSERT OR IGNORE INTO journal_state(id, applied_seq) VALUES (1, 0)");
+    }
+
+    // Web sessions (see SqliteSessionStore). Times are epoch millis; deleting a user ends their sessions.
+    private static void sessions(Statement st) throws SQLException {
+        st.execute(
+                "CREATE TABLE IF NOT EXISTS sessions ("
+                        + " id TEXT PRIMARY KEY,"
+                        + " username TEXT NOT NULL,"
+                        + " role TEXT NOT NULL,"
+                        + " created_at INTEGER NOT NULL,"
+                        + " last_seen INTEGER NOT NULL,"
+                        + " FOREIGN KEY(username) REFERENCES users(username) ON DELETE CASCADE"
+                        + ") WITHOUT ROWID"
+        );
+        st.execute("CREATE INDEX IF NOT EXISTS idx_sessions_username ON sessions(username)");
+        st.execute("CREATE INDEX IF NOT EXISTS idx_sessions_last_seen ON sessions(last_seen)");
+    }
+
+    // Sessions are keyed by SHA-256 of the id instead of the id itself. Existing rows hold raw ids
+    // and can't be converted, so they are dropped (those users log in again once).
+    private static void sessionIdHashes(Statement st) throws SQLException {
+        st.execute("DELETE FROM sessions");
+        st.execute("ALTER TABLE sessions RENAME COLUMN id TO id_hash");
+    }
+
+    // ISO 'YYYY-MM-DD' text -> days since 1970-01-01; NULL stays NULL.
+    private static String epochDay(String column) {
+        return "CAST(julianday(" + column + ") - 2440587.5 AS INTEGER)";
+    }
+
+    // Inventory is maintained by triggers so borrow/return are each a single statement.
+    private static void createLoanInventoryTriggers(Statement st) throws SQLException {
+        st.execute(
+                "CREATE TRIGGER IF NOT EXISTS trg_loans_borrow_inventory "
+                        + "AFTER INSERT ON loans WHEN NEW.return_date IS NULL "
+                        + "BEGIN "
+                        + " UPDATE books SET available_copies = available_copies - 1 WHERE id = NEW.book_id; "
+                        + "END"
+        );
+        st.execute(
+                "CREATE TRIGGER IF NOT EXISTS trg_loans_return_inventory "
+                        + "AFTER UPDATE OF return_date ON loans "
+                        + "WHEN OLD.return_date IS NULL AND NEW.return_date IS NOT NULL "
+                        + "BEGIN "
+                        + " UPDATE books "
+                        + " SET available_copies = CASE WHEN available_copies < total_copies THEN available_copies + 1 ELSE available_copies END "
+                        + " WHERE id = NEW.book_id; "
+                        + "END"
+        );
+    }
+
+    // History reads (all loans, a user's loans) go through this view so they cover both tables.
+    private static void createLoansAllView(Statement st) throws SQLException {
+        st.execute(
+                "CREATE VIEW IF NOT EXISTS loans_all AS "
+                        + "SELECT id, username, book_id, loan_date, return_date FROM loans "
+                        + "UNION ALL "
+                        + "SELECT id, username, book_id, loan_date, return_date FROM loans_archive"
+        );
+    }
+
+    // FTS5 index over books(title, author), kept in sync by triggers. An external-content table
+    // stores only the index, not a second copy of the text.
+    private static void createSearchIndex(Statement st) throws SQLException {
+        boolean existed;
+        try (ResultSet rs = st.executeQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'books_fts'")) {
+            existed = rs.next();
+        }
+
+        st.execute(
+                "CREATE VIRTUAL TABLE IF NOT EXISTS books_fts USING fts5("
+                        + " title, author,"
+                        + " content = 'books', content_rowid = 'id',"
+                        + " tokenize = 'unicode61 remove_diacritics 2'"
+                        + ")"
+        );
+        st.execute(
+                "CREATE TRIGGER IF NOT EXISTS trg_books_fts_insert AFTER INSERT ON books BEGIN "
+                        + " INSERT INTO books_fts(rowid, title, author) VALUES (NEW.id, NEW.title, NEW.author); "
+                        + "END"
+        );
+        st.execute(
+                "CREATE TRIGGER IF NOT EXISTS trg_books_fts_delete AFTER DELETE ON books BEGIN "
+                        + " INSERT INTO books_fts(books_fts, rowid, title, author) VALUES ('delete', OLD.id, OLD.title, OLD.author); "
+                        + "END"
+        );
+        st.execute(
+                "CREATE TRIGGER IF NOT EXISTS trg_books_fts_update AFTER UPDATE OF title, author ON books BEGIN "
+                        + " INSERT INTO books_fts(books_fts, rowid, title, author) VALUES ('delete', OLD.id, OLD.title, OLD.author); "
+                        + " INSERT INTO books_fts(rowid, title, author) VALUES (NEW.id, NEW.title, NEW.author); "
+                        + "END"
+        );
+
+        if (!existed) {
+            // existing database: index the books that were there before the search table
+            st.execute("INSERT INTO books_fts(books_fts) VALUES ('rebuild')");
+        }
+    }
+}
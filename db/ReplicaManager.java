@@ -0,0 +1,141 @@
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Keeps a read-only copy of the primary database for reporting queries.
+// Each refresh runs VACUUM INTO on a dedicated connection (a consistent snapshot that only reads the
+// primary, so checkouts keep committing), writing into whichever of two replica files is not being
+// served; readers are then switched to the new copy. The copy it replaced stays open until the next
+// refresh (whose target is that copy's file), so a report that picked it up just before the switch
+// still finishes against an open pool.
+public final class ReplicaManager implements AutoCloseable {
+    public static final long DEFAULT_REFRESH_SECONDS = 60;
+    private static final int REPLICA_READ_POOL_SIZE = 4;
+
+    private static final class Replica {
+        private final Database db;
+        private final SqliteLibraryRepository repo;
+        private final long snapshotAtMillis;
+
+        private Replica(Database db, long snapshotAtMillis) {
+            this.db = db;
+            this.repo = new SqliteLibraryRepository(db);
+            this.snapshotAtMillis = snapshotAtMillis;
+        }
+
+        private void close() {
+            repo.close();
+            db.close();
+        }
+    }
+
+    private final String primaryPath;
+    private final String replicaPrefix;
+    private final ConnectionPool snapshotConnection;
+    private volatile Replica current;
+    private Replica retired; // the previous copy, closed at the start of the next refresh
+    private int generation;
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaManager(String primaryPath) {
+        this(primaryPath, primaryPath.replaceFirst("\\.db$", "") + ".replica");
+    }
+
+    // Replica files are <replicaPrefix>-0.db and <replicaPrefix>-1.db.
+    public ReplicaManager(String primaryPath, String replicaPrefix) {
+        if (primaryPath == null || primaryPath.isBlank()) throw new IllegalArgumentException("primaryPath required");
+        if (replicaPrefix == null || replicaPrefix.isBlank()) throw new IllegalArgumentException("replicaPrefix required");
+        this.primaryPath = primaryPath;
+        this.replicaPrefix = replicaPrefix;
+        // not query_only: VACUUM INTO writes the target file (the primary itself is only read)
+        this.snapshotConnection = new ConnectionPool("jdbc:sqlite:" + primaryPath, 1,
+                Database.DEFAULT_MAX_WAIT_MILLIS, List.of("PRAGMA busy_timeout = 5000"));
+    }
+
+    public synchronized void start(long periodSeconds) {
+        if (periodSeconds <= 0) throw new IllegalArgumentException("periodSeconds must be > 0");
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                System.err.println("Replica refresh failed: " + e.getMessage());
+            }
+        }, 0, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    // Takes a new snapshot of the primary and switches readers to it.
+    public synchronized void refresh() {
+        int next = generation + 1;
+        String target = replicaPrefix + "-" + (next % 2) + ".db";
+        // target is the retired copy's file; its readers have had a whole refresh period to finish
+        if (retired != null) {
+            retired.close();
+            retired = null;
+        }
+        deleteReplicaFiles(target); // VACUUM INTO needs a missing or empty target
+        long snapshotAt = System.currentTimeMillis();
+        try (Connection c = snapshotConnection.borrow();
+             PreparedStatement ps = c.prepareStatement("VACUUM INTO ?")) {
+            ps.setString(1, target);
+            ps.execute();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        retired = current;
+        current = new Replica(new Database(target, REPLICA_READ_POOL_SIZE, Database.DEFAULT_MAX_WAIT_MILLIS), snapshotAt);
+        generation = next;
+    }
+
+    // null until the first refresh has completed
+    public SqliteLibraryRepository replica() {
+        Replica r = current;
+        return (r == null) ? null : r.repo;
+    }
+
+    // How far behind the primary the served copy may be; Long.MAX_VALUE before the first refresh.
+    public long getStalenessMillis() {
+        Replica r = current;
+        return (r == null) ? Long.MAX_VALUE : System.currentTimeMillis() - r.snapshotAtMillis;
+    }
+
+    public String getPrimaryPath() {
+        return primaryPath;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        Replica r = current;
+        current = null;
+        if (r != null) r.close();
+        if (retired != null) {
+            retired.close();
+            retired = null;
+        }
+        snapshotConnection.close();
+    }
+
+    private static void deleteReplicaFiles(String path) {
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            File f = new File(path + suffix);
+            if (f.exists() && !f.delete()) {
+                throw new IllegalStateException("Cannot delete old replica file " + f);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Sends report-style reads (all loans, active loans, date-range/overdue lists, exports) to the
+// replica kept by ReplicaManager, as long as it is at most maxStalenessMillis behind; everything else,
+// and every read while no fresh enough replica exists, goes to the primary.
+// Code that must see its own latest writes wraps the call in onPrimary(...).
+public final class ReplicaRoutingLibraryRepository implements LibraryRepository {
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = ThreadLocal.withInitial(() -> false);
+
+    private final LibraryRepository primary;
+    private final ReplicaManager replicas;
+    private final long maxStalenessMillis;
+
+    public ReplicaRoutingLibraryRepository(LibraryRepository primary, ReplicaManager replicas, long maxStalenessMillis) {
+        if (primary == null) throw new IllegalArgumentException("primary required");
+        if (replicas == null) throw new IllegalArgumentException("replicas required");
+        if (maxStalenessMillis <= 0) throw new IllegalArgumentException("maxStalenessMillis must be > 0");
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    // Runs call with every read on this thread served by the primary.
+    public static <T> T onPrimary(Supplier<T> call) {
+        boolean outer = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(true);
+        try {
+            return call.get();
+        } finally {
+            PRIMARY_ONLY.set(outer);
+        }
+    }
+
+    private LibraryRepository reports() {
+        if (PRIMARY_ONLY.get()) return primary;
+        LibraryRepository replica = replicas.replica();
+        if (replica == null || replicas.getStalenessMillis() > maxStalenessMillis) return primary;
+        return replica;
+    }
+
+    // ---- report reads: replica when fresh enough ----
+
+    @Override
+    public List<Loan> listAllLoans() {
+        return reports().listAllLoans();
+    }
+
+    @Override
+    public List<Loan> listActiveLoans() {
+        return reports().listActiveLoans();
+    }
+
+    @Override
+    public List<Loan> listLoansBetween(LocalDate from, LocalDate to) {
+        return reports().listLoansBetween(from, to);
+    }
+
+    @Override
+    public List<Loan> listOverdueLoans(LocalDate dueBefore) {
+        return reports().listOverdueLoans(dueBefore);
+    }
+
+    @Override
+    public Page<Loan> listAllLoansPage(String cursor, int limit) {
+        return reports().listAllLoansPage(cursor, limit);
+    }
+
+    @Override
+    public Page<Loan> listActiveLoansPage(String cursor, int limit) {
+        return reports().listActiveLoansPage(cursor, limit);
+    }
+
+    @Override
+    public void exportAllLoans(RowVisitor<Loan> visitor) throws IOException {
+        reports().exportAllLoans(visitor);
+    }
+
+    @Override
+    public void exportBooks(RowVisitor<Book> visitor) throws IOException {
+        reports().exportBooks(visitor);
+    }
+
+    // ---- everything else: primary ----
+
+    @Override
+    public Book addBook(String title, String author, int copies) {
+        return primary.addBook(title, author, copies);
+    }
+
+    @Override
+    public int addBooks(Iterable<BookDraft> books) {
+        return primary.addBooks(books);
+    }
+
+    @Override
+    public boolean removeBook(int bookId) {
+        return primary.removeBook(bookId);
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        return primary.listBooks();
+    }
+
+    @Override
+    public List<Book> searchBooks(String query) {
+        return primary.searchBooks(query);
+    }
+
+    @Override
+    public Book findBook(int bookId) {
+        return primary.findBook(bookId);
+    }
+
+    @Override
+    public Loan borrowBook(String username, int bookId) {
+        return primary.borrowBook(username, bookId);
+    }
+
+    @Override
+    public boolean returnBook(String username, int bookId) {
+        return primary.returnBook(username, bookId);
+    }
+
+    @Override
+    public List<Loan> listLoansForUser(String username) {
+        return primary.listLoansForUser(username);
+    }
+
+    @Override
+    public Page<Book> listBooksPage(BookSort sort, String cursor, int limit) {
+        return primary.listBooksPage(sort, cursor, limit);
+    }
+
+    @Override
+    public Page<Loan> listLoansForUserPage(String username, String cursor, int limit) {
+        return primary.listLoansForUserPage(username, cursor, limit);
+    }
+
+    @Override
+    public boolean hasAnyBooks() {
+        return primary.hasAnyBooks();
+    }
+}
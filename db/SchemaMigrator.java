@@ -0,0 +1,165 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Applies ordered migrations on startup, recording the schema version in PRAGMA user_version,
+// then runs background migrations in resumable batches on a daemon thread.
+public final class SchemaMigrator {
+    public static final long DEFAULT_BATCH_PAUSE_MILLIS = 25;
+
+    private final Database db;
+    private final List<Migration> migrations;
+    private final List<BackgroundMigration> background;
+    private final long batchPauseMillis;
+    private Thread backgroundThread;
+
+    public SchemaMigrator(Database db, List<Migration> migrations, List<BackgroundMigration> background) {
+        this(db, migrations, background, DEFAULT_BATCH_PAUSE_MILLIS);
+    }
+
+    public SchemaMigrator(Database db, List<Migration> migrations, List<BackgroundMigration> background, long batchPauseMillis) {
+        if (db == null) throw new IllegalArgumentException("db required");
+        if (migrations == null) throw new IllegalArgumentException("migrations required");
+        if (batchPauseMillis < 0) throw new IllegalArgumentException("batchPauseMillis must be >= 0");
+        List<Migration> sorted = new ArrayList<>(migrations);
+        sorted.sort(Comparator.comparingInt(Migration::getVersion));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).getVersion() == sorted.get(i - 1).getVersion()) {
+                throw new IllegalArgumentException("duplicate migration version " + sorted.get(i).getVersion());
+            }
+        }
+        this.db = db;
+        this.migrations = sorted;
+        this.background = (background == null) ? List.of() : List.copyOf(background);
+        this.batchPauseMillis = batchPauseMillis;
+    }
+
+    public int currentVersion() throws SQLException {
+        try (Connection c = db.connect(); Statement st = c.createStatement()) {
+            return readVersion(st);
+        }
+    }
+
+    // Applies every migration newer than user_version, each in its own transaction. Returns the new version.
+    public int migrate() throws SQLException {
+        try (Connection c = db.connect(); Statement st = c.createStatement()) {
+            int version = readVersion(st);
+            for (Migration m : migrations) {
+                if (m.getVersion() <= version) continue;
+                c.setAutoCommit(false);
+                try {
+                    m.apply(st);
+                    // user_version lives in the file header and is part of the same transaction
+                    st.execute("PRAGMA user_version = " + m.getVersion());
+                    c.commit();
+                } catch (SQLException e) {
+                    c.rollback();
+                    throw new SQLException("Migration " + m + " failed: " + e.getMessage(), e);
+                } finally {
+                    c.setAutoCommit(true);
+                }
+                version = m.getVersion();
+            }
+            st.execute(
+                    "CREATE TABLE IF NOT EXISTS schema_background_migrations ("
+                            + " name TEXT PRIMARY KEY,"
+                            + " cursor TEXT NULL,"
+                            + " completed INTEGER NOT NULL DEFAULT 0"
+                            + ")"
+            );
+            return version;
+        }
+    }
+
+    public synchronized void startBackground() {
+        if (backgroundThread != null || background.isEmpty()) return;
+        backgroundThread = new Thread(this::runBackground, "schema-background-migrations");
+        backgroundThread.setDaemon(true);
+        backgroundThread.start();
+    }
+
+    public boolean isComplete(String name) throws SQLException {
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT completed FROM schema_background_migrations WHERE name = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void runBackground() {
+        for (BackgroundMigration m : background) {
+            try {
+                runToCompletion(m);
+            } catch (SQLException | RuntimeException e) {
+                // left incomplete; the next start resumes from the saved cursor
+                System.err.println("Background migration " + m.getName() + " stopped: " + e.getMessage());
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runToCompletion(BackgroundMigration m) throws SQLException, InterruptedException {
+        while (true) {
+            // one batch = one short writer transaction (work + cursor), then let other writers in
+            if (db.retry().run(() -> runBatch(m))) return;
+            Thread.sleep(batchPauseMillis);
+        }
+    }
+
+    // Returns true once the migration is complete.
+    private boolean runBatch(BackgroundMigration m) throws SQLException {
+        try (Connection c = db.connect()) {
+            c.setAutoCommit(false);
+            try {
+                String cursor = null;
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT cursor, completed FROM schema_background_migrations WHERE name = ?")) {
+                    ps.setString(1, m.getName());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            if (rs.getInt("completed") == 1) {
+                                c.rollback();
+                                return true;
+                            }
+                            cursor = rs.getString("cursor");
+                        }
+                    }
+                }
+                String next = m.runBatch(c, cursor);
+                boolean done = (next == null);
+                try (PreparedStatement ps = c.prepareStatement(
+                        "INSERT INTO schema_background_migrations(name, cursor, completed) VALUES(?,?,?) "
+                                + "ON CONFLICT(name) DO UPDATE SET cursor = excluded.cursor, completed = excluded.completed")) {
+                    ps.setString(1, m.getName());
+                    ps.setString(2, next);
+                    ps.setInt(3, done ? 1 : 0);
+                    ps.executeUpdate();
+                }
+                c.commit();
+                return done;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static int readVersion(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+// Books and their loans spread over N SQLite files, each with its own Database (pools, writer thread),
+// so borrows of books on different shards commit in parallel instead of queueing for one writer lock.
+//
+// Ids are global: a row with local id L on shard s is exposed as L * N + s, so id % N names the shard
+// and ordering by global id is ordering by (L, s). The shard count must therefore never change for a
+// given set of files. Single-book operations touch one shard; lists and searches fan out in parallel.
+//
+// Shard files have no users, so their foreign keys are off and borrowBook checks the UserStore instead.
+// Loans of a deleted user are not cascaded into the shards.
+// Existing books and loans in the unsharded database are not moved: see requireNoUnshardedData().
+public final class ShardedLibraryRepository implements LibraryRepository, AutoCloseable {
+    private final List<Database> databases;
+    private final List<SqliteLibraryRepository> shards;
+    private final int n;
+    private final UserStore users;
+    private final ExecutorService fanOut;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    // Opens (and migrates) <prefix>-shard-0.db .. <prefix>-shard-(count-1).db.
+    public static ShardedLibraryRepository open(String pathPrefix, int shardCount, UserStore users) {
+        if (pathPrefix == null || pathPrefix.isBlank()) throw new IllegalArgumentException("pathPrefix required");
+        if (shardCount <= 0) throw new IllegalArgumentException("shardCount must be > 0");
+        List<Database> dbs = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            Database db = new Database(pathPrefix + "-shard-" + i + ".db",
+                    Database.DEFAULT_READ_POOL_SIZE, Database.DEFAULT_MAX_WAIT_MILLIS, false);
+            db.init();
+            dbs.add(db);
+        }
+        return new ShardedLibraryRepository(dbs, users);
+    }
+
+    // Books and active loans left in the unsharded database would vanish once sharding is on, and those
+    // loans could never be returned, so startup in sharded mode is refused until they are gone.
+    public static void requireNoUnshardedData(Database primary) {
+        if (primary == null) throw new IllegalArgumentException("primary required");
+        try (Connection c = primary.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT (SELECT COUNT(*) FROM books WHERE is_deleted = 0), "
+                             + "(SELECT COUNT(*) FROM loans WHERE return_date IS NULL)");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            long books = rs.getLong(1);
+            long activeLoans = rs.getLong(2);
+            if (books > 0 || activeLoans > 0) {
+                throw new IllegalStateException("Cannot enable sharding: the unsharded database still holds "
+                        + books + " books and " + activeLoans + " active loans, which are not moved into shard files");
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public ShardedLibraryRepository(List<Database> databases, UserStore users) {
+        if (databases == null || databases.isEmpty()) throw new IllegalArgumentException("databases required");
+        this.databases = List.copyOf(databases);
+        this.n = databases.size();
+        this.users = users;
+        List<SqliteLibraryRepository> repos = new ArrayList<>();
+        for (Database db : this.databases) repos.add(new SqliteLibraryRepository(db));
+        this.shards = List.copyOf(repos);
+        AtomicInteger threadNo = new AtomicInteger();
+        this.fanOut = Executors.newFixedThreadPool(n, r -> {
+            Thread t = new Thread(r, "library-shard-query-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getShardCount() {
+        return n;
+    }
+
+    public List<Database> databases() {
+        return databases;
+    }
+
+    @Override
+    public void close() {
+        fanOut.shutdownNow();
+        for (SqliteLibraryRepository r : shards) r.close();
+        for (Database db : databases) db.close();
+    }
+
+    // ---- id mapping ----
+
+    private int shardOf(int globalId) {
+        return globalId % n;
+    }
+
+    private int localId(int globalId) {
+        return globalId / n;
+    }
+
+    private int globalId(int localId, int shard) {
+        return localId * n + shard;
+    }
+
+    // Largest local id on this shard whose global id is <= afterGlobalId (0 = from the start).
+    private int afterLocal(int afterGlobalId, int shard) {
+        return (afterGlobalId < shard) ? 0 : (afterGlobalId - shard) / n;
+    }
+
+    private Book toGlobal(Book b, int shard) {
+        if (b == null) return null;
+        return new Book(globalId(b.getId(), shard), b.getTitle(), b.getAuthor(), b.getTotalCopies(), b.getAvailableCopies());
+    }
+
+    private Loan toGlobal(Loan l, int shard) {
+        if (l == null) return null;
+        return new Loan(globalId(l.getId(), shard), l.getUsername(), globalId(l.getBookId(), shard),
+                l.getLoanDate(), l.getReturnDate());
+    }
+
+    private List<Book> booksToGlobal(List<Book> books, int shard) {
+        List<Book> out = new ArrayList<>(books.size());
+        for (Book b : books) out.add(toGlobal(b, shard));
+        return out;
+    }
+
+    private List<Loan> loansToGlobal(List<Loan> loans, int shard) {
+        List<Loan> out = new ArrayList<>(loans.size());
+        for (Loan l : loans) out.add(toGlobal(l, shard));
+        return out;
+    }
+
+    // Runs the call on every shard in parallel; results are in shard order.
+    private <T> List<T> all(IntFunction<T> call) {
+        if (n == 1) return List.of(call.apply(0));
+        List<CompletableFuture<T>> futures = new ArrayList<>(n);
+        for (int s = 0; s < n; s++) {
+            int shard = s;
+            futures.add(CompletableFuture.supplyAsync(() -> call.apply(shard), fanOut));
+        }
+        List<T> out = new ArrayList<>(n);
+        try {
+            for (CompletableFuture<T> f : futures) out.add(f.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return out;
+    }
+
+    private static <T> List<T> merged(List<List<T>> parts, Comparator<T> order) {
+        List<T> out = new ArrayList<>();
+        for (List<T> p : parts) out.addAll(p);
+        out.sort(order);
+        return out;
+    }
+
+    private static final Comparator<Loan> LOAN_ID = Comparator.comparingInt(Loan::getId);
+    private static final Comparator<Loan> LOAN_DATE = Comparator.comparing(Loan::getLoanDate).thenComparingInt(Loan::getId);
+    private static final Comparator<Book> BOOK_ID = Comparator.comparingInt(Book::getId);
+
+    // ---- single shard ----
+
+    @Override
+    public Book addBook(String title, String author, int copies) {
+        int shard = Math.floorMod(nextShard.getAndIncrement(), n);
+        return toGlobal(shards.get(shard).addBook(title, author, copies), shard);
+    }
+
+    @Override
+    public boolean removeBook(int bookId) {
+        if (bookId < n) return false;
+        return shards.get(shardOf(bookId)).removeBook(localId(bookId));
+    }
+
+    @Override
+    public Book findBook(int bookId) {
+        if (bookId < n) return null;
+        int shard = shardOf(bookId);
+        return toGlobal(shards.get(shard).findBook(localId(bookId)), shard);
+    }
+
+    @Override
+    public Loan borrowBook(String username, int bookId) {
+        if (username == null || username.isBlank()) throw new IllegalArgumentException("username required");
+        if (bookId < n) return null;
+        // stands in for the users foreign key the shard files cannot have
+        if (users != null && users.findByUsername(username.trim()) == null) return null;
+        int shard = shardOf(bookId);
+        return toGlobal(shards.get(shard).borrowBook(username, localId(bookId)), shard);
+    }
+
+    @Override
+    public boolean returnBook(String username, int bookId) {
+        if (bookId < n) return false;
+        return shards.get(shardOf(bookId)).returnBook(username, localId(bookId));
+    }
+
+    // ---- fan-out ----
+
+    // Round-robin split, then every shard imports its part in parallel.
+    @Override
+    public int addBooks(Iterable<BookDraft> books) {
+        if (books == null) throw new IllegalArgumentException("books required");
+        List<List<BookDraft>> parts = new ArrayList<>(n);
+        for (int s = 0; s < n; s++) parts.add(new ArrayList<>());
+        for (BookDraft d : books) {
+            if (d == null) continue;
+            parts.get(Math.floorMod(nextShard.getAndIncrement(), n)).add(d);
+        }
+        int added = 0;
+        for (int count : all(s -> shards.get(s).addBooks(parts.get(s)))) added += count;
+        return added;
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        List<List<Book>> parts = all(s -> booksToGlobal(shards.get(s).listBooks(), s));
+        return merged(parts, BOOK_ID);
+    }
+
+    // Each shard ranks its own matches; the ranked lists are interleaved so the best hits of every
+    // shard come first (bm25 scores are not comparable across files).
+    @Override
+    public List<Book> searchBooks(String query) {
+        List<List<Book>> parts = all(s -> booksToGlobal(shards.get(s).searchBooks(query), s));
+        String q = (query == null) ? "" : query.trim();
+        if (q.isEmpty()) return merged(parts, BOOK_ID);
+        List<Book> out = new ArrayList<>();
+        for (int i = 0; ; i++) {
+            boolean any = false;
+            for (List<Book> p : parts) {
+                if (i < p.size()) {
+                    out.add(p.get(i));
+                    any = true;
+                }
+            }
+            if (!any) return out;
+        }
+    }
+
+    @Override
+    public List<Loan> listLoansForUser(String username) {
+        return merged(all(s -> loansToGlobal(shards.get(s).listLoansForUser(username), s)), LOAN_ID);
+    }
+
+    @Override
+    public List<Loan> listAllLoans() {
+        return merged(all(s -> loansToGlobal(shards.get(s).listAllLoans(), s)), LOAN_ID);
+    }
+
+    @Override
+    public List<Loan> listActiveLoans() {
+        return merged(all(s -> loansToGlobal(shards.get(s).listActiveLoans(), s)), LOAN_ID);
+    }
+
+    @Override
+    public List<Loan> listLoansBetween(LocalDate from, LocalDate to) {
+        return merged(all(s -> loansToGlobal(shards.get(s).listLoansBetween(from, to), s)), LOAN_DATE);
+    }
+
+    @Override
+    public List<Loan> listOverdueLoans(LocalDate dueBefore) {
+        return merged(all(s -> loansToGlobal(shards.get(s).listOverdueLoans(dueBefore), s)), LOAN_DATE);
+    }
+
+    // Keyset pages: every shard returns its next `limit` rows after the cursor, the merge keeps the first `limit`.
+    @Override
+    public Page<Book> listBooksPage(BookSort sort, String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        BookSort s = (sort == null) ? BookSort.ID : sort;
+        PageCursor after = PageCursor.parse(cursor);
+        List<List<Book>> parts = all(shard -> {
+            String local = after.isStart() ? null
+                    : new PageCursor(after.getSortKey(), afterLocal(after.getAfterId(), shard)).encode();
+            return booksToGlobal(shards.get(shard).listBooksPage(s, local, limit).getItems(), shard);
+        });
+
+        Comparator<Book> order = BOOK_ID;
+        if (s != BookSort.ID) {
+            order = Comparator.comparing((Book b) -> sortKey(b, s), ShardedLibraryRepository::compareNoCase)
+                    .thenComparingInt(Book::getId);
+        }
+        List<Book> rows = merged(parts, order);
+        if (rows.size() <= limit) return new Page<>(rows, null);
+        List<Book> page = rows.subList(0, limit);
+        Book last = page.get(limit - 1);
+        String key = (s == BookSort.ID) ? null : sortKey(last, s);
+        return new Page<>(page, new PageCursor(key, last.getId()).encode());
+    }
+
+    private static String sortKey(Book b, BookSort s) {
+        return (s == BookSort.TITLE) ? b.getTitle() : b.getAuthor();
+    }
+
+    // SQLite's NOCASE: only ASCII letters fold.
+    private static int compareNoCase(String a, String b) {
+        int len = Math.min(a.length(), b.length());
+        for (int i = 0; i < len; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x >= 'A' && x <= 'Z') x += 32;
+            if (y >= 'A' && y <= 'Z') y += 32;
+            if (x != y) return x - y;
+        }
+        return a.length() - b.length();
+    }
+
+    @Override
+    public Page<Loan> listLoansForUserPage(String username, String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        return loanPage(cursor, limit, (s, local) -> shards.get(s).listLoansForUserPage(username, local, limit));
+    }
+
+    @Override
+    public Page<Loan> listAllLoansPage(String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        return loanPage(cursor, limit, (s, local) -> shards.get(s).listAllLoansPage(local, limit));
+    }
+
+    @Override
+    public Page<Loan> listActiveLoansPage(String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        return loanPage(cursor, limit, (s, local) -> shards.get(s).listActiveLoansPage(local, limit));
+    }
+
+    private interface ShardPage {
+        Page<Loan> fetch(int shard, String localCursor);
+    }
+
+    private Page<Loan> loanPage(String cursor, int limit, ShardPage fetch) {
+        PageCursor after = PageCursor.parse(cursor);
+        List<List<Loan>> parts = all(s -> {
+            String local = after.isStart() ? null : new PageCursor(null, afterLocal(after.getAfterId(), s)).encode();
+            return loansToGlobal(fetch.fetch(s, local).getItems(), s);
+        });
+        List<Loan> rows = merged(parts, LOAN_ID);
+        if (rows.size() <= limit) return new Page<>(rows, null);
+        List<Loan> page = rows.subList(0, limit);
+        return new Page<>(page, new PageCursor(null, page.get(limit - 1).getId()).encode());
+    }
+
+    // Exports stream shard by shard (ordered by id within a shard), never holding more than a row.
+    @Override
+    public void exportAllLoans(RowVisitor<Loan> visitor) throws IOException {
+        if (visitor == null) throw new IllegalArgumentException("visitor required");
+        for (int s = 0; s < n; s++) {
+            int shard = s;
+            shards.get(s).exportAllLoans(l -> visitor.visit(toGlobal(l, shard)));
+        }
+    }
+
+    @Override
+    public void exportBooks(RowVisitor<Book> visitor) throws IOException {
+        if (visitor == null) throw new IllegalArgumentException("visitor required");
+        for (int s = 0; s < n; s++) {
+            int shard = s;
+            shards.get(s).exportBooks(b -> visitor.visit(toGlobal(b, shard)));
+        }
+    }
+
+    @Override
+    public boolean hasAnyBooks() {
+        for (boolean any : all(s -> shards.get(s).hasAnyBooks())) {
+            if (any) return true;
+        }
+        return false;
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -5,14 +6,27 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public final class SqliteLibraryRepository implements LibraryRepository {
+    static final int IMPORT_CHUNK_SIZE = 500;
+    static final int EXPORT_FETCH_SIZE = 500;
+
     private final Database db;
+    private final GroupCommitWriter writer;
 
     public SqliteLibraryRepository(Database db) {
+        this(db, new GroupCommitWriter(db));
+    }
+
+    public SqliteLibraryRepository(Database db, GroupCommitWriter writer) {
         if (db == null) throw new IllegalArgumentException("db required");
+        if (writer == null) throw new IllegalArgumentException("writer required");
         this.db = db;
+        this.writer = writer;
     }
 
     @Override
@@ -22,42 +36,98 @@ public final class SqliteLibraryRepository implements LibraryRepository {
         if (author == null || author.isBlank()) throw new IllegalArgumentException("author required");
         if (copies <= 0) throw new IllegalArgumentException("copies must be > 0");
 
-        try (Connection c = db.connect();
-             PreparedStatement ps = c.prepareStatement(
-                     "INSERT INTO books(title, author, total_copies, available_copies, is_deleted) VALUES(?,?,?,?,0)",
-                     Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, title.trim());
-            ps.setString(2, author.trim());
-            ps.setInt(3, copies);
-            ps.setInt(4, copies);
-            ps.executeUpdate();
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (!keys.next()) throw new SQLException("No id generated");
-                int id = keys.getInt(1);
-                return new Book(id, title, author, copies, copies);
-            }
+        try {
+            return db.retry().run(() -> {
+                try (Connection c = db.connect();
+                     PreparedStatement ps = c.prepareStatement(
+                             "INSERT INTO books(title, author, total_copies, available_copies, is_deleted) VALUES(?,?,?,?,0)",
+                             Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, title.trim());
+                    ps.setString(2, author.trim());
+                    ps.setInt(3, copies);
+                    ps.setInt(4, copies);
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (!keys.next()) throw new SQLException("No id generated");
+                        int id = keys.getInt(1);
+                        return new Book(id, title, author, copies, copies);
+                    }
+                }
+            });
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
+    // Batched INSERTs, one transaction per chunk: the writer connection is handed back between chunks
+    // so borrows and returns keep flowing during a large import.
     @Override
-    public boolean removeBook(int bookId) {
-        if (bookId <= 0) return false;
+    public int addBooks(Iterable<BookDraft> books) {
+        if (books == null) throw new IllegalArgumentException("books required");
+        Iterator<BookDraft> it = books.iterator();
+        int added = 0;
+        while (it.hasNext()) {
+            // the chunk is kept so a transaction that hit SQLITE_BUSY can be re-run as a whole
+            List<BookDraft> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            while (chunk.size() < IMPORT_CHUNK_SIZE && it.hasNext()) {
+                BookDraft d = it.next();
+                if (d != null) chunk.add(d);
+            }
+            if (chunk.isEmpty()) continue;
+            try {
+                added += db.retry().run(() -> insertChunk(chunk));
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return added;
+    }
+
+    private int insertChunk(List<BookDraft> chunk) throws SQLException {
         try (Connection c = db.connect()) {
-            // active loans?
+            c.setAutoCommit(false);
             try (PreparedStatement ps = c.prepareStatement(
-                    "SELECT 1 FROM loans WHERE book_id = ? AND return_date IS NULL LIMIT 1")) {
-                ps.setInt(1, bookId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) return false;
+                    "INSERT INTO books(title, author, total_copies, available_copies, is_deleted) VALUES(?,?,?,?,0)")) {
+                for (BookDraft d : chunk) {
+                    ps.setString(1, d.getTitle());
+                    ps.setString(2, d.getAuthor());
+                    ps.setInt(3, d.getCopies());
+                    ps.setInt(4, d.getCopies());
+                    ps.addBatch();
                 }
+                ps.executeBatch();
+                c.commit();
+                return chunk.size();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
             }
-            try (PreparedStatement ps = c.prepareStatement(
-                    "UPDATE books SET is_deleted = 1 WHERE id = ? AND is_deleted = 0")) {
-                ps.setInt(1, bookId);
-                return ps.executeUpdate() == 1;
-            }
+        }
+    }
+
+    @Override
+    public boolean removeBook(int bookId) {
+        if (bookId <= 0) return false;
+        try {
+            return db.retry().run(() -> {
+                try (Connection c = db.connect()) {
+                    // active loans?
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "SELECT 1 FROM loans WHERE book_id = ? AND return_date IS NULL LIMIT 1")) {
+                        ps.setInt(1, bookId);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            if (rs.next()) return false;
+                        }
+                    }
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "UPDATE books SET is_deleted = 1 WHERE id = ? AND is_deleted = 0")) {
+                        ps.setInt(1, bookId);
+                        return ps.executeUpdate() == 1;
+                    }
+                }
+            });
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -65,7 +135,7 @@ public final class SqliteLibraryRepository implements LibraryRepository {
 
     @Override
     public List<Book> listBooks() {
-        try (Connection c = db.connect();
+        try (Connection c = db.connectReadOnly();
              PreparedStatement ps = c.prepareStatement(
                      "SELECT id, title, author, total_copies, available_copies FROM books WHERE is_deleted = 0 ORDER BY id");
              ResultSet rs = ps.executeQuery()) {
@@ -88,7 +158,42 @@ public final class SqliteLibraryRepository implements LibraryRepository {
     @Override
     public List<Book> searchBooks(String query) {
         String q = (query == null) ? "" : query.trim().toLowerCase();
-        try (Connection c = db.connect();
+        if (q.isEmpty()) return listBooks();
+        String match = toFtsQuery(q);
+        if (match == null) return searchBooksLike(q);
+
+        // token/prefix match through the FTS5 index, best matches first (title weighted over author)
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT b.id, b.title, b.author, b.total_copies, b.available_copies " +
+                             "FROM books_fts f JOIN books b ON b.id = f.rowid " +
+                             "WHERE books_fts MATCH ? AND b.is_deleted = 0 " +
+                             "ORDER BY bm25(books_fts, 2.0, 1.0), b.id")) {
+            ps.setString(1, match);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Book> out = new ArrayList<>();
+                while (rs.next()) out.add(toBook(rs));
+                return out;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // "clean cod" -> "clean"* "cod"*  (every token must match, each as a prefix)
+    private static String toFtsQuery(String q) {
+        StringBuilder b = new StringBuilder();
+        for (String token : q.split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (b.length() > 0) b.append(' ');
+            b.append('"').append(token).append("\"*");
+        }
+        return (b.length() == 0) ? null : b.toString();
+    }
+
+    // Queries without any word characters (e.g. "#" or "&") cannot use the index.
+    private List<Book> searchBooksLike(String q) {
+        try (Connection c = db.connectReadOnly();
              PreparedStatement ps = c.prepareStatement(
                      "SELECT id, title, author, total_copies, available_copies " +
                              "FROM books " +
@@ -118,7 +223,7 @@ public final class SqliteLibraryRepository implements LibraryRepository {
     @Override
     public Book findBook(int bookId) {
         if (bookId <= 0) return null;
-        try (Connection c = db.connect();
+        try (Connection c = db.connectReadOnly();
              PreparedStatement ps = c.prepareStatement(
                      "SELECT id, title, author, total_copies, available_copies FROM books WHERE id = ? AND is_deleted = 0 LIMIT 1")) {
             ps.setInt(1, bookId);
@@ -139,125 +244,76 @@ public final class SqliteLibraryRepository implements LibraryRepository {
 
     @Override
     public Loan borrowBook(String username, int bookId) {
+        return await(borrowBookAsync(username, bookId));
+    }
+
+    // Queued on the group-commit writer; completes once the batch containing it has committed.
+    public CompletableFuture<Loan> borrowBookAsync(String username, int bookId) {
         if (username == null || username.isBlank()) throw new IllegalArgumentException("username required");
-        if (bookId <= 0) return null;
+        if (bookId <= 0) return CompletableFuture.completedFuture(null);
 
         String u = username.trim();
         LocalDate today = LocalDate.now();
-
-        try (Connection c = db.connect()) {
-            c.setAutoCommit(false);
-            try {
-                // book exists, not deleted, available > 0
-                int available;
-                try (PreparedStatement ps = c.prepareStatement(
-                        "SELECT available_copies FROM books WHERE id = ? AND is_deleted = 0 LIMIT 1")) {
-                    ps.setInt(1, bookId);
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (!rs.next()) {
-                            c.rollback();
-                            return null;
-                        }
-                        available = rs.getInt("available_copies");
-                        if (available <= 0) {
-                            c.rollback();
-                            return null;
-                        }
-                    }
-                }
-
-                // insert loan (unique partial index prevents double-borrow of same book)
-                int loanId;
-                try (PreparedStatement ps = c.prepareStatement(
-                        "INSERT INTO loans(username, book_id, loan_date, return_date) VALUES(?,?,?,NULL)",
-                        Statement.RETURN_GENERATED_KEYS)) {
-                    ps.setString(1, u);
-                    ps.setInt(2, bookId);
-                    ps.setString(3, today.toString());
-                    ps.executeUpdate();
-                    try (ResultSet keys = ps.getGeneratedKeys()) {
-                        if (!keys.next()) throw new SQLException("No loan id generated");
-                        loanId = keys.getInt(1);
-                    }
-                }
-
-                // decrement available copies
-                try (PreparedStatement ps = c.prepareStatement(
-                        "UPDATE books SET available_copies = available_copies - 1 WHERE id = ? AND available_copies > 0")) {
-                    ps.setInt(1, bookId);
-                    if (ps.executeUpdate() != 1) {
-                        c.rollback();
-                        return null;
-                    }
-                }
-
-                c.commit();
-                return new Loan(loanId, u, bookId, today);
-            } catch (SQLException e) {
-                c.rollback();
-                // duplicate active loan -> treat as failed borrow
-                return null;
-            } finally {
-                c.setAutoCommit(true);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        // duplicate active loan (unique index) -> SQLException -> rolled back as a failed borrow
+        return writer.submit(c -> borrowInTransaction(c, u, bookId, today), null);
     }
 
     @Override
     public boolean returnBook(String username, int bookId) {
-        if (username == null || username.isBlank()) return false;
-        if (bookId <= 0) return false;
+        return await(returnBookAsync(username, bookId));
+    }
+
+    public CompletableFuture<Boolean> returnBookAsync(String username, int bookId) {
+        if (username == null || username.isBlank()) return CompletableFuture.completedFuture(false);
+        if (bookId <= 0) return CompletableFuture.completedFuture(false);
 
         String u = username.trim();
         LocalDate today = LocalDate.now();
+        return writer.submit(c -> returnInTransaction(c, u, bookId, today), false);
+    }
 
-        try (Connection c = db.connect()) {
-            c.setAutoCommit(false);
-            try {
-                Integer loanId = null;
-                try (PreparedStatement ps = c.prepareStatement(
-                        "SELECT id FROM loans WHERE username = ? AND book_id = ? AND return_date IS NULL LIMIT 1")) {
-                    ps.setString(1, u);
-                    ps.setInt(2, bookId);
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) loanId = rs.getInt("id");
-                    }
-                }
-                if (loanId == null) {
-                    c.rollback();
-                    return false;
-                }
+    public void close() {
+        writer.close();
+    }
 
-                try (PreparedStatement ps = c.prepareStatement(
-                        "UPDATE loans SET return_date = ? WHERE id = ? AND return_date IS NULL")) {
-                    ps.setString(1, today.toString());
-                    ps.setInt(2, loanId);
-                    if (ps.executeUpdate() != 1) {
-                        c.rollback();
-                        return false;
-                    }
-                }
+    // Runs inside the writer's batch transaction; returning null rolls this borrow back.
+    // One statement: the INSERT only produces a row if the book exists, is not deleted and has a copy left;
+    // trg_loans_borrow_inventory then decrements available_copies and idx_loans_active_unique
+    // rejects a second active loan of the same book.
+    static Loan borrowInTransaction(Connection c, String u, int bookId, LocalDate today) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO loans(username, book_id, loan_date, return_date) " +
+                        "SELECT ?, id, ?, NULL FROM books WHERE id = ? AND is_deleted = 0 AND available_copies > 0 " +
+                        "RETURNING id")) {
+            ps.setString(1, u);
+            ps.setLong(2, today.toEpochDay());
+            ps.setInt(3, bookId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new Loan(rs.getInt(1), u, bookId, today);
+            }
+        }
+    }
 
-                try (PreparedStatement ps = c.prepareStatement(
-                        "UPDATE books " +
-                                "SET available_copies = CASE WHEN available_copies < total_copies THEN available_copies + 1 ELSE available_copies END " +
-                                "WHERE id = ?")) {
-                    ps.setInt(1, bookId);
-                    ps.executeUpdate();
-                }
+    // Runs inside the writer's batch transaction; returning false rolls this return back.
+    // trg_loans_return_inventory puts the copy back when return_date is set.
+    static boolean returnInTransaction(Connection c, String u, int bookId, LocalDate today) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "UPDATE loans SET return_date = ? WHERE username = ? AND book_id = ? AND return_date IS NULL")) {
+            ps.setLong(1, today.toEpochDay());
+            ps.setString(2, u);
+            ps.setInt(3, bookId);
+            return ps.executeUpdate() == 1;
+        }
+    }
 
-                c.commit();
-                return true;
-            } catch (SQLException e) {
-                c.rollback();
-                return false;
-            } finally {
-                c.setAutoCommit(true);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw e;
         }
     }
 
@@ -265,9 +321,9 @@ public final class SqliteLibraryRepository implements LibraryRepository {
     public List<Loan> listLoansForUser(String username) {
         if (username == null || username.isBlank()) return List.of();
         String u = username.trim();
-        try (Connection c = db.connect();
+        try (Connection c = db.connectReadOnly();
              PreparedStatement ps = c.prepareStatement(
-                     "SELECT id, username, book_id, loan_date, return_date FROM loans WHERE username = ? ORDER BY id")) {
+                     "SELECT id, username, book_id, loan_date, return_date FROM loans_all WHERE username = ? ORDER BY id")) {
             ps.setString(1, u);
             try (ResultSet rs = ps.executeQuery()) {
                 List<Loan> out = new ArrayList<>();
@@ -283,10 +339,10 @@ public final class SqliteLibraryRepository implements LibraryRepository {
 
     @Override
     public List<Loan> listAllLoans() {
-        try (Connection c = db.connect();
-             Statement st = c.createStatement();
-             ResultSet rs = st.executeQuery(
-                     "SELECT id, username, book_id, loan_date, return_date FROM loans ORDER BY id")) {
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT id, username, book_id, loan_date, return_date FROM loans_all ORDER BY id");
+             ResultSet rs = ps.executeQuery()) {
             List<Loan> out = new ArrayList<>();
             while (rs.next()) out.add(toLoan(rs));
             return out;
@@ -297,10 +353,10 @@ public final class SqliteLibraryRepository implements LibraryRepository {
 
     @Override
     public List<Loan> listActiveLoans() {
-        try (Connection c = db.connect();
-             Statement st = c.createStatement();
-             ResultSet rs = st.executeQuery(
-                     "SELECT id, username, book_id, loan_date, return_date FROM loans WHERE return_date IS NULL ORDER BY id")) {
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT id, username, book_id, loan_date, return_date FROM loans WHERE return_date IS NULL ORDER BY id");
+             ResultSet rs = ps.executeQuery()) {
             List<Loan> out = new ArrayList<>();
             while (rs.next()) out.add(toLoan(rs));
             return out;
@@ -309,21 +365,202 @@ public final class SqliteLibraryRepository implements LibraryRepository {
         }
     }
 
+    // Loans taken out in [from, to] (inclusive), current and archived; range scan on loan_date.
+    @Override
+    public List<Loan> listLoansBetween(LocalDate from, LocalDate to) {
+        if (from == null) throw new IllegalArgumentException("from required");
+        if (to == null) throw new IllegalArgumentException("to required");
+        if (to.isBefore(from)) return List.of();
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT id, username, book_id, loan_date, return_date FROM loans_all " +
+                             "WHERE loan_date BETWEEN ? AND ? ORDER BY loan_date, id")) {
+            ps.setLong(1, from.toEpochDay());
+            ps.setLong(2, to.toEpochDay());
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Loan> out = new ArrayList<>();
+                while (rs.next()) out.add(toLoan(rs));
+                return out;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Active loans taken out before dueBefore, oldest first (served by idx_loans_overdue once built).
+    @Override
+    public List<Loan> listOverdueLoans(LocalDate dueBefore) {
+        if (dueBefore == null) throw new IllegalArgumentException("dueBefore required");
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT id, username, book_id, loan_date, return_date FROM loans " +
+                             "WHERE return_date IS NULL AND loan_date < ? ORDER BY loan_date, id")) {
+            ps.setLong(1, dueBefore.toEpochDay());
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Loan> out = new ArrayList<>();
+                while (rs.next()) out.add(toLoan(rs));
+                return out;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Page<Book> listBooksPage(BookSort sort, String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        BookSort s = (sort == null) ? BookSort.ID : sort;
+        PageCursor after = PageCursor.parse(cursor);
+        String sortColumn = (s == BookSort.TITLE) ? "title" : (s == BookSort.AUTHOR) ? "author" : null;
+
+        String sql;
+        if (sortColumn == null) {
+            sql = "SELECT id, title, author, total_copies, available_copies FROM books " +
+                    "WHERE is_deleted = 0 AND id > ? ORDER BY id LIMIT ?";
+        } else if (after.isStart()) {
+            sql = "SELECT id, title, author, total_copies, available_copies FROM books " +
+                    "WHERE is_deleted = 0 ORDER BY " + sortColumn + " COLLATE NOCASE, id LIMIT ?";
+        } else {
+            sql = "SELECT id, title, author, total_copies, available_copies FROM books " +
+                    "WHERE is_deleted = 0 AND (" + sortColumn + " COLLATE NOCASE, id) > (?, ?) " +
+                    "ORDER BY " + sortColumn + " COLLATE NOCASE, id LIMIT ?";
+        }
+
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = 1;
+            if (sortColumn == null) {
+                ps.setInt(i++, after.getAfterId());
+            } else if (!after.isStart()) {
+                ps.setString(i++, after.getSortKey() == null ? "" : after.getSortKey());
+                ps.setInt(i++, after.getAfterId());
+            }
+            ps.setInt(i, limit + 1); // one extra row tells us whether there is a next page
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Book> out = new ArrayList<>();
+                while (rs.next()) out.add(toBook(rs));
+                String next = null;
+                if (out.size() > limit) {
+                    out.remove(out.size() - 1);
+                    Book last = out.get(out.size() - 1);
+                    String key = (s == BookSort.TITLE) ? last.getTitle() : (s == BookSort.AUTHOR) ? last.getAuthor() : null;
+                    next = new PageCursor(key, last.getId()).encode();
+                }
+                return new Page<>(out, next);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Page<Loan> listLoansForUserPage(String username, String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        if (username == null || username.isBlank()) return new Page<>(List.of(), null);
+        return loanPage(
+                "SELECT id, username, book_id, loan_date, return_date FROM loans_all " +
+                        "WHERE username = ? AND id > ? ORDER BY id LIMIT ?",
+                username.trim(), cursor, limit);
+    }
+
+    @Override
+    public Page<Loan> listAllLoansPage(String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        return loanPage(
+                "SELECT id, username, book_id, loan_date, return_date FROM loans_all " +
+                        "WHERE id > ? ORDER BY id LIMIT ?",
+                null, cursor, limit);
+    }
+
+    @Override
+    public Page<Loan> listActiveLoansPage(String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        return loanPage(
+                "SELECT id, username, book_id, loan_date, return_date FROM loans " +
+                        "WHERE return_date IS NULL AND id > ? ORDER BY id LIMIT ?",
+                null, cursor, limit);
+    }
+
+    // Loans are always paged by id; username (if not null) is bound before the id.
+    private Page<Loan> loanPage(String sql, String username, String cursor, int limit) {
+        PageCursor after = PageCursor.parse(cursor);
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(sql)) {
+            int i = 1;
+            if (username != null) ps.setString(i++, username);
+            ps.setInt(i++, after.getAfterId());
+            ps.setInt(i, limit + 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<Loan> out = new ArrayList<>();
+                while (rs.next()) out.add(toLoan(rs));
+                String next = null;
+                if (out.size() > limit) {
+                    out.remove(out.size() - 1);
+                    next = new PageCursor(null, out.get(out.size() - 1).getId()).encode();
+                }
+                return new Page<>(out, next);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void exportAllLoans(RowVisitor<Loan> visitor) throws IOException {
+        if (visitor == null) throw new IllegalArgumentException("visitor required");
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT id, username, book_id, loan_date, return_date FROM loans_all ORDER BY id")) {
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) visitor.visit(toLoan(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void exportBooks(RowVisitor<Book> visitor) throws IOException {
+        if (visitor == null) throw new IllegalArgumentException("visitor required");
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT id, title, author, total_copies, available_copies FROM books WHERE is_deleted = 0 ORDER BY id")) {
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) visitor.visit(toBook(rs));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     public boolean hasAnyBooks() {
-        try (Connection c = db.connect();
-             Statement st = c.createStatement();
-             ResultSet rs = st.executeQuery("SELECT 1 FROM books WHERE is_deleted = 0 LIMIT 1")) {
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement("SELECT 1 FROM books WHERE is_deleted = 0 LIMIT 1");
+             ResultSet rs = ps.executeQuery()) {
             return rs.next();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static Book toBook(ResultSet rs) throws SQLException {
+        return new Book(
+                rs.getInt("id"),
+                rs.getString("title"),
+                rs.getString("author"),
+                rs.getInt("total_copies"),
+                rs.getInt("available_copies")
+        );
+    }
+
+    // Dates are stored as epoch days (see Migrations v2).
     private static Loan toLoan(ResultSet rs) throws SQLException {
-        LocalDate loanDate = LocalDate.parse(rs.getString("loan_date"));
-        String returnRaw = rs.getString("return_date");
-        LocalDate returnDate = (returnRaw == null) ? null : LocalDate.parse(returnRaw);
+        LocalDate loanDate = LocalDate.ofEpochDay(rs.getLong("loan_date"));
+        long returnDay = rs.getLong("return_date");
+        LocalDate returnDate = rs.wasNull() ? null : LocalDate.ofEpochDay(returnDay);
         return new Loan(
                 rs.getInt("id"),
                 rs.getString("username"),
@@ -0,0 +1,116 @@
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Retries write transactions that failed only because the database was locked (SQLITE_BUSY / SQLITE_LOCKED),
+// with full-jitter exponential backoff until a deadline. Everything else, in particular constraint
+// violations such as the unique active-loan index, is thrown straight away.
+// The work must be a whole transaction that rolls back on failure, so running it again is safe.
+// Writer connections use a very short busy_timeout (Database.WRITER_BUSY_TIMEOUT_MILLIS), so the
+// deadline here is the only long wait on a lock.
+public final class SqliteRetry {
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 5;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 250;
+    public static final long DEFAULT_DEADLINE_MILLIS = 5_000;
+
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    public interface Work<T> {
+        T run() throws SQLException;
+    }
+
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long deadlineMillis;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder giveUps = new LongAdder();
+    private final LongAdder waitedNanos = new LongAdder();
+
+    public SqliteRetry() {
+        this(DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS, DEFAULT_DEADLINE_MILLIS);
+    }
+
+    public SqliteRetry(long initialBackoffMillis, long maxBackoffMillis, long deadlineMillis) {
+        if (initialBackoffMillis <= 0) throw new IllegalArgumentException("initialBackoffMillis must be > 0");
+        if (maxBackoffMillis < initialBackoffMillis) throw new IllegalArgumentException("maxBackoffMillis must be >= initialBackoffMillis");
+        if (deadlineMillis < 0) throw new IllegalArgumentException("deadlineMillis must be >= 0");
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public <T> T run(Work<T> work) throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        long ceiling = initialBackoffMillis;
+        while (true) {
+            try {
+                return work.run();
+            } catch (SQLException e) {
+                if (!isContention(e)) throw e;
+                long sleepMillis = ThreadLocalRandom.current().nextLong(ceiling + 1);
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sleepMillis) - deadline > 0) {
+                    giveUps.increment();
+                    throw e;
+                }
+                retries.increment();
+                long start = System.nanoTime();
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    giveUps.increment();
+                    throw e;
+                } finally {
+                    waitedNanos.add(System.nanoTime() - start);
+                }
+                ceiling = Math.min(maxBackoffMillis, ceiling * 2);
+            }
+        }
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getGiveUps() {
+        return giveUps.sum();
+    }
+
+    public long getWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitedNanos.sum());
+    }
+
+    // Lock contention anywhere in the cause chain (the driver reports extended codes such as
+    // SQLITE_BUSY_SNAPSHOT, whose low byte is the primary code).
+    public static boolean isContention(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (!(c instanceof SQLException)) continue;
+            int code = ((SQLException) c).getErrorCode() & 0xFF;
+            if (code == SQLITE_BUSY || code == SQLITE_LOCKED) return true;
+            String msg = c.getMessage();
+            if (msg != null && (msg.contains("SQLITE_BUSY") || msg.contains("SQLITE_LOCKED")
+                    || msg.contains("database is locked"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean isConstraintViolation(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (!(c instanceof SQLException)) continue;
+            if ((((SQLException) c).getErrorCode() & 0xFF) == SQLITE_CONSTRAINT) return true;
+            String msg = c.getMessage();
+            if (msg != null && msg.contains("SQLITE_CONSTRAINT")) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "retries=" + getRetries() + " | giveUps=" + getGiveUps() + " | waitMillis=" + getWaitMillis();
+    }
+}
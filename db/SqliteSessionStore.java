@@ -0,0 +1,283 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Sessions that survive a restart: every session is a row in the sessions table, and requests are
+// served from a SessionManager in front of it (reloaded from the table at startup).
+// Login and logout write through; last-seen times only go into pendingLastSeen and are written in one
+// batched transaction every flush period, so a request never waits for the database. A crash loses at
+// most one period of last-seen updates, which only makes those sessions expire a little earlier.
+// The session id is a bearer credential, so only its SHA-256 is stored (and used as the front's key):
+// a copy of library.db (replica, backup) holds nothing a client could present. Sessions the front
+// drops on its own (expired, evicted when full) are deleted from the table too, so load() can't revive them.
+public final class SqliteSessionStore implements SessionStore, AutoCloseable {
+    public static final long DEFAULT_FLUSH_SECONDS = 30;
+
+    private final Database db;
+    private final SessionManager front;
+    private final Map<String, Long> pendingLastSeen = new ConcurrentHashMap<>(); // by id hash
+    private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();     // id hashes dropped by the front
+    private ScheduledExecutorService flusher;
+
+    public SqliteSessionStore(Database db) {
+        this(db, new SessionManager());
+    }
+
+    public SqliteSessionStore(Database db, SessionManager front) {
+        if (db == null) throw new IllegalArgumentException("db required");
+        if (front == null) throw new IllegalArgumentException("front required");
+        this.db = db;
+        this.front = front;
+        front.setRemovalListener(this::dropped);
+        deleteExpired();
+        load();
+    }
+
+    // Flushes last-seen times and removes expired rows every flushSeconds; also starts the front's sweeper.
+    public synchronized void start(long flushSeconds) {
+        if (flushSeconds <= 0) throw new IllegalArgumentException("flushSeconds must be > 0");
+        if (flusher != null) return;
+        front.start(60);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+                deleteExpired();
+            } catch (RuntimeException e) {
+                System.err.println("Session flush failed: " + e.getMessage());
+            }
+        }, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+        front.close();
+        flush();
+    }
+
+    @Override
+    public String createSession(User user) {
+        if (user == null) throw new IllegalArgumentException("user required");
+        String sessionId = UUID.randomUUID().toString();
+        String idHash = hashId(sessionId);
+        front.addSession(idHash, user); // may evict another session when full
+        List<String> dropped = drain(pendingDeletes);
+        long now = System.currentTimeMillis();
+        try {
+            db.retry().run(() -> {
+                try (Connection c = db.connect()) {
+                    c.setAutoCommit(false);
+                    try (PreparedStatement ins = c.prepareStatement(
+                                 "INSERT INTO sessions(id_hash, username, role, created_at, last_seen) VALUES(?,?,?,?,?)");
+                         PreparedStatement del = c.prepareStatement("DELETE FROM sessions WHERE id_hash = ?")) {
+                        ins.setString(1, idHash);
+                        ins.setString(2, user.getUsername());
+                        ins.setString(3, user.getRole().toString());
+                        ins.setLong(4, now);
+                        ins.setLong(5, now);
+                        ins.executeUpdate();
+                        for (String h : dropped) {
+                            del.setString(1, h);
+                            del.addBatch();
+                        }
+                        if (!dropped.isEmpty()) del.executeBatch();
+                        c.commit();
+                    } catch (SQLException e) {
+                        c.rollback();
+                        throw e;
+                    } finally {
+                        c.setAutoCommit(true);
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            front.deleteSession(idHash);
+            pendingDeletes.addAll(dropped);
+            throw new RuntimeException(e);
+        }
+        return sessionId;
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        if (sessionId == null) return;
+        String idHash = hashId(sessionId);
+        front.deleteSession(idHash);
+        pendingLastSeen.remove(idHash);
+        execute("DELETE FROM sessions WHERE id_hash = ?", idHash);
+    }
+
+    @Override
+    public int deleteSessionsFor(String username) {
+        if (username == null || username.isBlank()) return 0;
+        int removed = front.deleteSessionsFor(username);
+        // user deletion already cascades; this covers password resets
+        execute("DELETE FROM sessions WHERE username = ? COLLATE NOCASE", username.trim());
+        return removed;
+    }
+
+    @Override
+    public User getUser(String sessionId) {
+        if (sessionId == null) return null;
+        String idHash = hashId(sessionId);
+        User user = front.getUser(idHash);
+        if (user != null) pendingLastSeen.put(idHash, System.currentTimeMillis());
+        return user;
+    }
+
+    // Writes the collected last-seen times and deletes dropped sessions in one transaction;
+    // returns how many sessions were updated.
+    public int flush() {
+        if (pendingLastSeen.isEmpty() && pendingDeletes.isEmpty()) return 0;
+        List<Map.Entry<String, Long>> batch = new ArrayList<>();
+        for (Map.Entry<String, Long> e : pendingLastSeen.entrySet()) {
+            // remove(key, value): a newer time recorded meanwhile stays for the next flush
+            if (pendingLastSeen.remove(e.getKey(), e.getValue())) batch.add(Map.entry(e.getKey(), e.getValue()));
+        }
+        List<String> dropped = drain(pendingDeletes);
+        if (batch.isEmpty() && dropped.isEmpty()) return 0;
+        try {
+            db.retry().run(() -> {
+                try (Connection c = db.connect()) {
+                    c.setAutoCommit(false);
+                    try (PreparedStatement ps = c.prepareStatement(
+                                 "UPDATE sessions SET last_seen = MAX(last_seen, ?) WHERE id_hash = ?");
+                         PreparedStatement del = c.prepareStatement("DELETE FROM sessions WHERE id_hash = ?")) {
+                        for (Map.Entry<String, Long> e : batch) {
+                            ps.setLong(1, e.getValue());
+                            ps.setString(2, e.getKey());
+                            ps.addBatch();
+                        }
+                        if (!batch.isEmpty()) ps.executeBatch();
+                        for (String h : dropped) {
+                            del.setString(1, h);
+                            del.addBatch();
+                        }
+                        if (!dropped.isEmpty()) del.executeBatch();
+                        c.commit();
+                    } catch (SQLException e) {
+                        c.rollback();
+                        throw e;
+                    } finally {
+                        c.setAutoCommit(true);
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            // keep them for the next attempt unless a newer time has arrived
+            for (Map.Entry<String, Long> en : batch) pendingLastSeen.putIfAbsent(en.getKey(), en.getValue());
+            pendingDeletes.addAll(dropped);
+            throw new RuntimeException(e);
+        }
+        return batch.size();
+    }
+
+    public int size() {
+        return front.size();
+    }
+
+    public int getPendingWrites() {
+        return pendingLastSeen.size() + pendingDeletes.size();
+    }
+
+    static String hashId(String sessionId) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return PasswordUtil.toHex(md.digest(sessionId.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Should never happen for SHA-256 in standard JRE
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Most recently used first, so if there are more rows than the front holds the idle ones are
+    // left out, and deleted.
+    private void load() {
+        try (Connection c = db.connectReadOnly();
+             PreparedStatement ps = c.prepareStatement(
+                     "SELECT id_hash, username, role, created_at, last_seen FROM sessions ORDER BY last_seen DESC");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                User user = SqliteUserStore.toUser(rs.getString("username"), "", rs.getString("role"));
+                String idHash = rs.getString("id_hash");
+                if (!front.restore(idHash, user, rs.getLong("created_at"), rs.getLong("last_seen"))) {
+                    pendingDeletes.add(idHash);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        flush();
+    }
+
+    private void dropped(String idHash) {
+        pendingLastSeen.remove(idHash);
+        pendingDeletes.add(idHash);
+    }
+
+    private static List<String> drain(Set<String> set) {
+        List<String> out = new ArrayList<>();
+        for (String s : set) {
+            if (set.remove(s)) out.add(s);
+        }
+        return out;
+    }
+
+    private void deleteExpired() {
+        long now = System.currentTimeMillis();
+        try {
+            db.retry().run(() -> {
+                try (Connection c = db.connect();
+                     PreparedStatement ps = c.prepareStatement(
+                             "DELETE FROM sessions WHERE last_seen < ? OR created_at < ?")) {
+                    ps.setLong(1, now - front.getIdleTimeoutMillis());
+                    ps.setLong(2, now - front.getAbsoluteTimeoutMillis());
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void execute(String sql, String arg) {
+        try {
+            db.retry().run(() -> {
+                try (Connection c = db.connect(); PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setString(1, arg);
+                    return ps.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return front + " | pendingWrites=" + getPendingWrites();
+    }
+}
@@ -0,0 +1,138 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Compiled statements for one physical connection, keyed by SQL text (+ generated-keys flag).
+// A pooled connection is used by one thread at a time, so the cache itself needs no locking.
+final class StatementCache {
+    private final Connection raw;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final class Entry {
+        private final PreparedStatement statement;
+        private boolean inUse;
+
+        private Entry(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    StatementCache(Connection raw, int maxSize, LongAdder hits, LongAdder misses) {
+        this.raw = raw;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        Entry e = entries.get(key);
+        if (e != null && !e.inUse) {
+            hits.increment();
+            e.inUse = true;
+            return wrap(e);
+        }
+        misses.increment();
+        PreparedStatement ps = (autoGeneratedKeys == Statement.NO_GENERATED_KEYS)
+                ? raw.prepareStatement(sql)
+                : raw.prepareStatement(sql, autoGeneratedKeys);
+        if (e != null || maxSize == 0) {
+            // same SQL already checked out on this connection (or caching disabled): plain statement
+            return ps;
+        }
+        Entry created = new Entry(ps);
+        created.inUse = true;
+        entries.put(key, created);
+        evictOverflow();
+        return wrap(created);
+    }
+
+    void closeAll() {
+        for (Entry e : entries.values()) {
+            closeQuietly(e.statement);
+        }
+        entries.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            if (eldest.inUse) continue;
+            it.remove();
+            closeQuietly(eldest.statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+            // statement is being discarded anyway
+        }
+    }
+
+    private PreparedStatement wrap(Entry e) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                new CachedHandler(e));
+    }
+
+    // close() resets the statement for the next caller instead of discarding the compiled SQL.
+    private static final class CachedHandler implements InvocationHandler {
+        private final Entry entry;
+        private boolean released;
+
+        private CachedHandler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                if (!released) {
+                    released = true;
+                    try {
+                        entry.statement.clearParameters();
+                        entry.statement.clearBatch();
+                    } finally {
+                        entry.inUse = false;
+                    }
+                }
+                return null;
+            }
+            if ("isClosed".equals(name) && method.getParameterCount() == 0) {
+                return released || entry.statement.isClosed();
+            }
+            if ("equals".equals(name) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(name) && method.getParameterCount() == 0) {
+                return "Cached[" + entry.statement + "]";
+            }
+            if (released) throw new SQLException("Statement already closed");
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
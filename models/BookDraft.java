@@ -0,0 +1,27 @@
+// A book that has not been stored yet (no id). Used for bulk catalog imports.
+public final class BookDraft {
+    private final String title;
+    private final String author;
+    private final int copies;
+
+    public BookDraft(String title, String author, int copies) {
+        if (title == null || title.isBlank()) throw new IllegalArgumentException("title required");
+        if (author == null || author.isBlank()) throw new IllegalArgumentException("author required");
+        if (copies <= 0) throw new IllegalArgumentException("copies must be > 0");
+        this.title = title.trim();
+        this.author = author.trim();
+        this.copies = copies;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public int getCopies() {
+        return copies;
+    }
+}
@@ -0,0 +1,17 @@
+public enum BookSort {
+    ID,
+    TITLE,
+    AUTHOR;
+
+    public static BookSort fromParam(String raw) {
+        if (raw == null || raw.isBlank()) return ID;
+        switch (raw.trim().toLowerCase()) {
+            case "title":
+                return TITLE;
+            case "author":
+                return AUTHOR;
+            default:
+                return ID;
+        }
+    }
+}
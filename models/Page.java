@@ -0,0 +1,24 @@
+import java.util.List;
+
+public final class Page<T> {
+    private final List<T> items;
+    private final String nextCursor; // null = last page
+
+    public Page(List<T> items, String nextCursor) {
+        if (items == null) throw new IllegalArgumentException("items required");
+        this.items = List.copyOf(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
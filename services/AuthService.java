@@ -1,15 +1,137 @@
-public final class AuthService {
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+// Password checks run on a small dedicated pool: PBKDF2 is deliberately slow, and a burst of logins
+// must not take every core away from borrow and list requests. When the pool and its short queue are
+// full, authenticate() fails fast with AuthBusyException instead of piling up HTTP threads.
+// A successful login with a legacy or under-cost hash stores a fresh hash (see PasswordUtil.needsRehash).
+public final class AuthService implements AutoCloseable {
+    public static final int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int DEFAULT_QUEUE_PER_THREAD = 8;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5_000;
+
+    public static final class AuthBusyException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public AuthBusyException(String message) {
+            super(message);
+        }
+    }
+
     private final UserStore userStore;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    // verified against when the username is unknown, so both cases take the same time
+    private final String dummyHash = PasswordUtil.hash("not-a-real-password");
+
+    private final LongAdder logins = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rehashed = new LongAdder();
 
     public AuthService(UserStore userStore) {
+        this(userStore, DEFAULT_THREADS, DEFAULT_THREADS * DEFAULT_QUEUE_PER_THREAD, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public AuthService(UserStore userStore, int threads, int queueCapacity, long timeoutMillis) {
         if (userStore == null) throw new IllegalArgumentException("userStore required");
+        if (threads <= 0) throw new IllegalArgumentException("threads must be > 0");
+        if (queueCapacity <= 0) throw new IllegalArgumentException("queueCapacity must be > 0");
+        if (timeoutMillis <= 0) throw new IllegalArgumentException("timeoutMillis must be > 0");
         this.userStore = userStore;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "auth");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
     }
 
     public User authenticate(String username, String password) {
+        Future<User> result;
+        try {
+            result = executor.submit(() -> verify(username, password));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new AuthBusyException("Too many logins in progress, please try again.");
+        }
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            rejected.increment();
+            throw new AuthBusyException("Login timed out, please try again.");
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthBusyException("Login interrupted.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private User verify(String username, String password) {
         User user = userStore.findByUsername(username);
-        if (user == null) return null;
-        return user.checkPassword(password) ? user : null;
+        if (user == null) {
+            PasswordUtil.matches(password == null ? "" : password, dummyHash);
+            failures.increment();
+            return null;
+        }
+        if (!user.checkPassword(password)) {
+            failures.increment();
+            return null;
+        }
+        logins.increment();
+        if (PasswordUtil.needsRehash(user.getPasswordHash())) {
+            try {
+                if (userStore.updatePasswordHash(user.getUsername(), PasswordUtil.hash(password))) {
+                    rehashed.increment();
+                    // sessions are bound to the stored hash (see SignedSessionTokens), so hand out the new one
+                    User updated = userStore.findByUsername(user.getUsername());
+                    if (updated != null) user = updated;
+                }
+            } catch (RuntimeException e) {
+                // the login itself succeeded; the upgrade is retried next time
+                System.err.println("Password rehash failed for " + user.getUsername() + ": " + e.getMessage());
+            }
+        }
+        return user;
     }
-}
 
+    public long getLogins() {
+        return logins.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    // turned away because the auth pool was saturated or too slow
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getRehashed() {
+        return rehashed.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "logins=" + getLogins() + " | failures=" + getFailures() + " | rejected=" + getRejected()
+                + " | rehashed=" + getRehashed() + " | iterations=" + PasswordUtil.getIterations();
+    }
+}
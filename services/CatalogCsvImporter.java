@@ -0,0 +1,148 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streams "title,author,copies" rows into LibraryService.addBooks in chunks.
+// Only the current chunk is held in memory, so file size does not matter.
+public final class CatalogCsvImporter {
+    public static final int CHUNK_SIZE = 500;
+    public static final int MAX_REJECTED_DETAILS = 100;
+
+    public interface ProgressListener {
+        void onProgress(long rowsRead, long imported, long rejected);
+    }
+
+    public static final class Result {
+        private final long rowsRead;
+        private final long imported;
+        private final long rejected;
+        private final List<String> rejectedDetails;
+
+        private Result(long rowsRead, long imported, long rejected, List<String> rejectedDetails) {
+            this.rowsRead = rowsRead;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.rejectedDetails = List.copyOf(rejectedDetails);
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        // First MAX_REJECTED_DETAILS rejected rows as "line N: reason".
+        public List<String> getRejectedDetails() {
+            return rejectedDetails;
+        }
+
+        @Override
+        public String toString() {
+            return "rows=" + rowsRead + " | imported=" + imported + " | rejected=" + rejected;
+        }
+    }
+
+    private final LibraryService library;
+
+    public CatalogCsvImporter(LibraryService library) {
+        if (library == null) throw new IllegalArgumentException("library required");
+        this.library = library;
+    }
+
+    public Result importFrom(Reader source, ProgressListener listener) throws IOException {
+        if (source == null) throw new IllegalArgumentException("source required");
+        BufferedReader in = (source instanceof BufferedReader) ? (BufferedReader) source : new BufferedReader(source);
+
+        List<BookDraft> chunk = new ArrayList<>(CHUNK_SIZE);
+        List<String> rejectedDetails = new ArrayList<>();
+        long rowsRead = 0;
+        long imported = 0;
+        long rejected = 0;
+        long lineNo = 0;
+        boolean firstRow = true;
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            List<String> fields = parseLine(line);
+            if (firstRow) {
+                firstRow = false;
+                // optional header row
+                if (!fields.isEmpty() && "title".equalsIgnoreCase(fields.get(0).trim())) continue;
+            }
+            rowsRead++;
+            try {
+                chunk.add(toDraft(fields));
+            } catch (IllegalArgumentException e) {
+                rejected++;
+                if (rejectedDetails.size() < MAX_REJECTED_DETAILS) {
+                    rejectedDetails.add("line " + lineNo + ": " + e.getMessage());
+                }
+            }
+            if (chunk.size() >= CHUNK_SIZE) {
+                imported += library.addBooks(chunk);
+                chunk.clear();
+                if (listener != null) listener.onProgress(rowsRead, imported, rejected);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += library.addBooks(chunk);
+            chunk.clear();
+        }
+        if (listener != null) listener.onProgress(rowsRead, imported, rejected);
+        return new Result(rowsRead, imported, rejected, rejectedDetails);
+    }
+
+    private static BookDraft toDraft(List<String> fields) {
+        if (fields.size() != 3) {
+            throw new IllegalArgumentException("expected 3 columns (title,author,copies), got " + fields.size());
+        }
+        int copies;
+        try {
+            copies = Integer.parseInt(fields.get(2).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("copies is not a number: " + fields.get(2).trim());
+        }
+        return new BookDraft(fields.get(0), fields.get(1), copies);
+    }
+
+    // Minimal CSV: comma separated, optional double quotes, "" inside quotes is a literal quote.
+    static List<String> parseLine(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(ch);
+            }
+        }
+        out.add(cur.toString());
+        return out;
+    }
+}
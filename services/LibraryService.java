@@ -1,6 +1,11 @@
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 
 public final class LibraryService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
     private final LibraryRepository repo;
 
     public LibraryService(LibraryRepository repo) {
@@ -12,6 +17,10 @@ public final class LibraryService {
         return repo.addBook(title, author, copies);
     }
 
+    public int addBooks(Iterable<BookDraft> books) {
+        return repo.addBooks(books);
+    }
+
     public boolean removeBook(int bookId) {
         return repo.removeBook(bookId);
     }
@@ -48,6 +57,43 @@ public final class LibraryService {
         return repo.listActiveLoans();
     }
 
+    public List<Loan> listLoansBetween(LocalDate from, LocalDate to) {
+        return repo.listLoansBetween(from, to);
+    }
+
+    public List<Loan> listOverdueLoans(LocalDate dueBefore) {
+        return repo.listOverdueLoans(dueBefore);
+    }
+
+    public Page<Book> listBooksPage(BookSort sort, String cursor, int limit) {
+        return repo.listBooksPage(sort, cursor, clampPageSize(limit));
+    }
+
+    public Page<Loan> listLoansForUserPage(String username, String cursor, int limit) {
+        return repo.listLoansForUserPage(username, cursor, clampPageSize(limit));
+    }
+
+    public Page<Loan> listAllLoansPage(String cursor, int limit) {
+        return repo.listAllLoansPage(cursor, clampPageSize(limit));
+    }
+
+    public Page<Loan> listActiveLoansPage(String cursor, int limit) {
+        return repo.listActiveLoansPage(cursor, clampPageSize(limit));
+    }
+
+    private static int clampPageSize(int limit) {
+        if (limit <= 0) return DEFAULT_PAGE_SIZE;
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    public void exportAllLoans(RowVisitor<Loan> visitor) throws IOException {
+        repo.exportAllLoans(visitor);
+    }
+
+    public void exportBooks(RowVisitor<Book> visitor) throws IOException {
+        repo.exportBooks(visitor);
+    }
+
     public void seedDemoData() {
         if (repo.hasAnyBooks()) return;
         repo.addBook("Clean Code", "Robert C. Martin", 3);
@@ -40,12 +40,8 @@ public final class UserService {
         User u = userStore.findByUsername(username);
         if (u == null) return false;
         validatePasswordOnly(newPassword);
-        u.setPassword(newPassword);
-        if (userStore instanceof SqliteUserStore) {
-            SqliteUserStore sqlite = (SqliteUserStore) userStore;
-            return sqlite.updatePasswordHash(u.getUsername(), u.getPasswordHash());
-        }
-        return true;
+        // only the store changes; u may be shared with other readers
+        return userStore.updatePasswordHash(u.getUsername(), PasswordUtil.hash(newPassword));
     }
 
     public List<User> listUsers() {
@@ -0,0 +1,307 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Read-through cache for the catalog (findBook, listBooks, searchBooks) in front of another repository.
+// Writes go straight to the delegate and then drop exactly the cached entries that contain the touched
+// book. A generation counter, bumped after every invalidation, stops a read that started before a write
+// from caching what it read. Book is mutable, so callers always get copies.
+public final class CachingLibraryRepository implements LibraryRepository {
+    public static final int DEFAULT_MAX_BOOKS = 10_000;
+    public static final int DEFAULT_MAX_SEARCHES = 256;
+    public static final int DEFAULT_MAX_LIST_SIZE = 5_000;
+
+    private final LibraryRepository delegate;
+    private final int maxListSize;
+    private final Object lock = new Object();
+    private final LinkedHashMap<Integer, Book> books;
+    private final LinkedHashMap<String, List<Book>> searches;
+    private List<Book> allBooks; // listBooks(), null = not cached
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public CachingLibraryRepository(LibraryRepository delegate) {
+        this(delegate, DEFAULT_MAX_BOOKS, DEFAULT_MAX_SEARCHES, DEFAULT_MAX_LIST_SIZE);
+    }
+
+    // maxListSize: listBooks/searchBooks results with more rows than this are not cached.
+    public CachingLibraryRepository(LibraryRepository delegate, int maxBooks, int maxSearches, int maxListSize) {
+        if (delegate == null) throw new IllegalArgumentException("delegate required");
+        if (maxBooks <= 0) throw new IllegalArgumentException("maxBooks must be > 0");
+        if (maxSearches <= 0) throw new IllegalArgumentException("maxSearches must be > 0");
+        if (maxListSize <= 0) throw new IllegalArgumentException("maxListSize must be > 0");
+        this.delegate = delegate;
+        this.maxListSize = maxListSize;
+        this.books = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Book> eldest) {
+                return size() > maxBooks;
+            }
+        };
+        this.searches = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Book>> eldest) {
+                return size() > maxSearches;
+            }
+        };
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return (total == 0) ? 0.0 : (double) h / total;
+    }
+
+    public void clear() {
+        synchronized (lock) {
+            books.clear();
+            searches.clear();
+            allBooks = null;
+            generation++;
+        }
+    }
+
+    // ---- cached reads ----
+
+    @Override
+    public Book findBook(int bookId) {
+        if (bookId <= 0) return null;
+        long gen;
+        synchronized (lock) {
+            Book cached = books.get(bookId);
+            if (cached != null) {
+                hits.increment();
+                return copy(cached);
+            }
+            gen = generation;
+        }
+        misses.increment();
+        Book loaded = delegate.findBook(bookId);
+        if (loaded == null) return null; // misses are not cached: addBook would have to know the new id
+        synchronized (lock) {
+            if (gen == generation) books.put(bookId, copy(loaded));
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        long gen;
+        synchronized (lock) {
+            if (allBooks != null) {
+                hits.increment();
+                return copyAll(allBooks);
+            }
+            gen = generation;
+        }
+        misses.increment();
+        List<Book> loaded = delegate.listBooks();
+        if (loaded.size() <= maxListSize) {
+            List<Book> snapshot = copyAll(loaded);
+            synchronized (lock) {
+                if (gen == generation) allBooks = snapshot;
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<Book> searchBooks(String query) {
+        String key = (query == null) ? "" : query.trim().toLowerCase();
+        if (key.isEmpty()) return listBooks();
+        long gen;
+        synchronized (lock) {
+            List<Book> cached = searches.get(key);
+            if (cached != null) {
+                hits.increment();
+                return copyAll(cached);
+            }
+            gen = generation;
+        }
+        misses.increment();
+        List<Book> loaded = delegate.searchBooks(query);
+        if (loaded.size() <= maxListSize) {
+            List<Book> snapshot = copyAll(loaded);
+            synchronized (lock) {
+                if (gen == generation) searches.put(key, snapshot);
+            }
+        }
+        return loaded;
+    }
+
+    // ---- writes: delegate, then invalidate ----
+
+    @Override
+    public Book addBook(String title, String author, int copies) {
+        try {
+            return delegate.addBook(title, author, copies);
+        } finally {
+            // a new book can show up in any list or search, but no cached book changed
+            invalidateLists();
+        }
+    }
+
+    @Override
+    public int addBooks(Iterable<BookDraft> books) {
+        try {
+            return delegate.addBooks(books);
+        } finally {
+            invalidateLists();
+        }
+    }
+
+    @Override
+    public boolean removeBook(int bookId) {
+        try {
+            return delegate.removeBook(bookId);
+        } finally {
+            invalidateBook(bookId);
+        }
+    }
+
+    @Override
+    public Loan borrowBook(String username, int bookId) {
+        try {
+            return delegate.borrowBook(username, bookId);
+        } finally {
+            invalidateBook(bookId);
+        }
+    }
+
+    @Override
+    public boolean returnBook(String username, int bookId) {
+        try {
+            return delegate.returnBook(username, bookId);
+        } finally {
+            invalidateBook(bookId);
+        }
+    }
+
+    private void invalidateLists() {
+        synchronized (lock) {
+            allBooks = null;
+            searches.clear();
+            generation++;
+        }
+        invalidations.increment();
+    }
+
+    // Drops the book itself, the full list and only those searches whose results contain it.
+    private void invalidateBook(int bookId) {
+        synchronized (lock) {
+            books.remove(bookId);
+            allBooks = null;
+            Iterator<List<Book>> it = searches.values().iterator();
+            while (it.hasNext()) {
+                if (containsBook(it.next(), bookId)) it.remove();
+            }
+            generation++;
+        }
+        invalidations.increment();
+    }
+
+    private static boolean containsBook(List<Book> list, int bookId) {
+        for (Book b : list) {
+            if (b.getId() == bookId) return true;
+        }
+        return false;
+    }
+
+    private static Book copy(Book b) {
+        return new Book(b.getId(), b.getTitle(), b.getAuthor(), b.getTotalCopies(), b.getAvailableCopies());
+    }
+
+    private static List<Book> copyAll(List<Book> list) {
+        List<Book> out = new ArrayList<>(list.size());
+        for (Book b : list) out.add(copy(b));
+        return out;
+    }
+
+    // ---- not cached ----
+
+    @Override
+    public List<Loan> listLoansForUser(String username) {
+        return delegate.listLoansForUser(username);
+    }
+
+    @Override
+    public List<Loan> listAllLoans() {
+        return delegate.listAllLoans();
+    }
+
+    @Override
+    public List<Loan> listActiveLoans() {
+        return delegate.listActiveLoans();
+    }
+
+    @Override
+    public List<Loan> listLoansBetween(LocalDate from, LocalDate to) {
+        return delegate.listLoansBetween(from, to);
+    }
+
+    @Override
+    public List<Loan> listOverdueLoans(LocalDate dueBefore) {
+        return delegate.listOverdueLoans(dueBefore);
+    }
+
+    @Override
+    public Page<Book> listBooksPage(BookSort sort, String cursor, int limit) {
+        return delegate.listBooksPage(sort, cursor, limit);
+    }
+
+    @Override
+    public Page<Loan> listLoansForUserPage(String username, String cursor, int limit) {
+        return delegate.listLoansForUserPage(username, cursor, limit);
+    }
+
+    @Override
+    public Page<Loan> listAllLoansPage(String cursor, int limit) {
+        return delegate.listAllLoansPage(cursor, limit);
+    }
+
+    @Override
+    public Page<Loan> listActiveLoansPage(String cursor, int limit) {
+        return delegate.listActiveLoansPage(cursor, limit);
+    }
+
+    @Override
+    public void exportAllLoans(RowVisitor<Loan> visitor) throws IOException {
+        delegate.exportAllLoans(visitor);
+    }
+
+    @Override
+    public void exportBooks(RowVisitor<Book> visitor) throws IOException {
+        delegate.exportBooks(visitor);
+    }
+
+    @Override
+    public boolean hasAnyBooks() {
+        return delegate.hasAnyBooks();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d | misses=%d | hitRatio=%.2f | invalidations=%d",
+                getHits(), getMisses(), getHitRatio(), getInvalidations());
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded, time-limited cache for findByUsername, which every authenticated web request goes through.
+// delete and updatePasswordHash invalidate the entry, so a deleted user loses access on the next request.
+// The TTL only bounds staleness for changes made outside this instance (e.g. another process).
+// User is mutable (setPassword), so callers get a copy and never the cached instance.
+public final class CachingUserStore implements UserStore {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final long DEFAULT_TTL_SECONDS = 60;
+
+    private static final class Entry {
+        private final User user;
+        private final long expiresAtNanos;
+
+        private Entry(User user, long expiresAtNanos) {
+            this.user = user;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final UserStore delegate;
+    private final long ttlNanos;
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, Entry> entries;
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingUserStore(UserStore delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public CachingUserStore(UserStore delegate, int maxEntries, long ttl, TimeUnit unit) {
+        if (delegate == null) throw new IllegalArgumentException("delegate required");
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be > 0");
+        if (ttl <= 0) throw new IllegalArgumentException("ttl must be > 0");
+        if (unit == null) throw new IllegalArgumentException("unit required");
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return (total == 0) ? 0.0 : (double) h / total;
+    }
+
+    // Usernames are case-insensitive in both stores.
+    private static String key(String username) {
+        return username.trim().toLowerCase();
+    }
+
+    @Override
+    public User findByUsername(String username) {
+        if (username == null || username.isBlank()) return null;
+        String key = key(username);
+        long gen;
+        synchronized (lock) {
+            Entry e = entries.get(key);
+            if (e != null) {
+                if (System.nanoTime() - e.expiresAtNanos < 0) {
+                    hits.increment();
+                    return copy(e.user);
+                }
+                entries.remove(key);
+            }
+            gen = generation;
+        }
+        misses.increment();
+        User loaded = delegate.findByUsername(username);
+        if (loaded == null) return null; // not cached, so a later add() is seen immediately
+        synchronized (lock) {
+            // skip if a write happened while we were reading
+            if (gen == generation) entries.put(key, new Entry(copy(loaded), System.nanoTime() + ttlNanos));
+        }
+        return loaded;
+    }
+
+    @Override
+    public void add(User user) {
+        try {
+            delegate.add(user);
+        } finally {
+            if (user != null) invalidate(user.getUsername());
+        }
+    }
+
+    @Override
+    public boolean delete(String username) {
+        try {
+            return delegate.delete(username);
+        } finally {
+            invalidate(username);
+        }
+    }
+
+    @Override
+    public boolean updatePasswordHash(String username, String newPasswordHash) {
+        try {
+            return delegate.updatePasswordHash(username, newPasswordHash);
+        } finally {
+            invalidate(username);
+        }
+    }
+
+    @Override
+    public List<User> listAll() {
+        return delegate.listAll();
+    }
+
+    @Override
+    public boolean hasAnyUsers() {
+        return delegate.hasAnyUsers();
+    }
+
+    private static User copy(User u) {
+        switch (u.getRole()) {
+            case STUDENT:
+                return new Student(u.getUsername(), u.getPasswordHash(), true);
+            case LIBRARIAN:
+                return new Librarian(u.getUsername(), u.getPasswordHash(), true);
+            case ADMIN:
+                return new Admin(u.getUsername(), u.getPasswordHash(), true);
+            default:
+                throw new IllegalArgumentException("Unknown role: " + u.getRole());
+        }
+    }
+
+    private void invalidate(String username) {
+        synchronized (lock) {
+            if (username != null && !username.isBlank()) entries.remove(key(username));
+            generation++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d | misses=%d | hitRatio=%.2f", getHits(), getMisses(), getHitRatio());
+    }
+}
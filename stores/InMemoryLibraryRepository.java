@@ -0,0 +1,406 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Memory-resident LibraryRepository (load-test baseline without a database, kiosk deployments).
+// Enforces the same rules as SqliteLibraryRepository without locks:
+//  - availability is an AtomicInteger per book, changed only by CAS; -1 marks a deleted book, and
+//    removeBook can only CAS it from "all copies on the shelf", so a book with active loans cannot be removed
+//  - at most one active loan per (user, book), claimed with putIfAbsent on the by-user index
+//  - a loan becomes visible only after its copy was taken, and is returned at most once (state CAS)
+// Reads are lock-free snapshots of the concurrent maps.
+public final class InMemoryLibraryRepository implements LibraryRepository {
+    private static final int DELETED = -1;
+
+    private static final int PENDING = 0;
+    private static final int ACTIVE = 1;
+    private static final int RETURNED = 2;
+
+    private static final class BookState {
+        private final int id;
+        private final String title;
+        private final String author;
+        private final int totalCopies;
+        private final AtomicInteger available;
+
+        private BookState(int id, String title, String author, int totalCopies) {
+            this.id = id;
+            this.title = title;
+            this.author = author;
+            this.totalCopies = totalCopies;
+            this.available = new AtomicInteger(totalCopies);
+        }
+
+        private boolean takeCopy() {
+            while (true) {
+                int a = available.get();
+                if (a <= 0) return false; // none left, or deleted
+                if (available.compareAndSet(a, a - 1)) return true;
+            }
+        }
+
+        private void putCopyBack() {
+            while (true) {
+                int a = available.get();
+                if (a < 0 || a >= totalCopies) return;
+                if (available.compareAndSet(a, a + 1)) return;
+            }
+        }
+
+        // null once deleted
+        private Book snapshot() {
+            int a = available.get();
+            return (a == DELETED) ? null : new Book(id, title, author, totalCopies, a);
+        }
+    }
+
+    private static final class LoanRecord {
+        private final int id;
+        private final String username;
+        private final int bookId;
+        private final LocalDate loanDate;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private volatile LocalDate returnDate;
+
+        private LoanRecord(int id, String username, int bookId, LocalDate loanDate) {
+            this.id = id;
+            this.username = username;
+            this.bookId = bookId;
+            this.loanDate = loanDate;
+        }
+
+        private boolean isActive() {
+            return state.get() == ACTIVE;
+        }
+
+        private Loan snapshot() {
+            return new Loan(id, username, bookId, loanDate, returnDate);
+        }
+    }
+
+    private final UserStore users;
+    private final AtomicInteger nextBookId = new AtomicInteger();
+    private final AtomicInteger nextLoanId = new AtomicInteger();
+    private final ConcurrentSkipListMap<Integer, BookState> books = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Integer, LoanRecord> loans = new ConcurrentSkipListMap<>();
+    // username (lower case) -> all of the user's loans by id
+    private final ConcurrentMap<String, ConcurrentSkipListMap<Integer, LoanRecord>> loansByUser = new ConcurrentHashMap<>();
+    // username (lower case) -> bookId -> active (or being created) loan
+    private final ConcurrentMap<String, ConcurrentMap<Integer, LoanRecord>> activeByUser = new ConcurrentHashMap<>();
+    // bookId -> active loans
+    private final ConcurrentMap<Integer, Set<LoanRecord>> activeByBook = new ConcurrentHashMap<>();
+
+    public InMemoryLibraryRepository() {
+        this(null);
+    }
+
+    // With a user store, borrowing requires an existing user (the users foreign key in SQLite).
+    public InMemoryLibraryRepository(UserStore users) {
+        this.users = users;
+    }
+
+    // Usernames are case-insensitive, as with COLLATE NOCASE.
+    private static String userKey(String username) {
+        return username.toLowerCase();
+    }
+
+    @Override
+    public Book addBook(String title, String author, int copies) {
+        if (title == null || title.isBlank()) throw new IllegalArgumentException("title required");
+        if (author == null || author.isBlank()) throw new IllegalArgumentException("author required");
+        if (copies <= 0) throw new IllegalArgumentException("copies must be > 0");
+        BookState b = new BookState(nextBookId.incrementAndGet(), title.trim(), author.trim(), copies);
+        books.put(b.id, b);
+        return b.snapshot();
+    }
+
+    @Override
+    public int addBooks(Iterable<BookDraft> drafts) {
+        if (drafts == null) throw new IllegalArgumentException("books required");
+        int added = 0;
+        for (BookDraft d : drafts) {
+            if (d == null) continue;
+            addBook(d.getTitle(), d.getAuthor(), d.getCopies());
+            added++;
+        }
+        return added;
+    }
+
+    @Override
+    public boolean removeBook(int bookId) {
+        if (bookId <= 0) return false;
+        BookState b = books.get(bookId);
+        if (b == null) return false;
+        Set<LoanRecord> active = activeByBook.get(bookId);
+        if (active != null && !active.isEmpty()) return false;
+        // succeeds only while every copy is on the shelf, i.e. no loan can be in flight
+        return b.available.compareAndSet(b.totalCopies, DELETED);
+    }
+
+    @Override
+    public List<Book> listBooks() {
+        List<Book> out = new ArrayList<>();
+        for (BookState b : books.values()) {
+            Book snap = b.snapshot();
+            if (snap != null) out.add(snap);
+        }
+        return out;
+    }
+
+    // Same semantics as the FTS5 query: every token must be a prefix of a word in title or author.
+    @Override
+    public List<Book> searchBooks(String query) {
+        String q = (query == null) ? "" : query.trim().toLowerCase();
+        if (q.isEmpty()) return listBooks();
+        List<String> tokens = tokens(q);
+        List<Book> out = new ArrayList<>();
+        for (BookState b : books.values()) {
+            Book snap = b.snapshot();
+            if (snap == null) continue;
+            boolean match;
+            if (tokens.isEmpty()) {
+                // no word characters: plain substring match, like the LIKE fallback
+                match = b.title.toLowerCase().contains(q) || b.author.toLowerCase().contains(q);
+            } else {
+                match = matchesAllPrefixes(tokens(b.title.toLowerCase() + " " + b.author.toLowerCase()), tokens);
+            }
+            if (match) out.add(snap);
+        }
+        return out;
+    }
+
+    private static List<String> tokens(String s) {
+        List<String> out = new ArrayList<>();
+        for (String t : s.split("[^\\p{L}\\p{N}]+")) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+
+    private static boolean matchesAllPrefixes(List<String> words, List<String> prefixes) {
+        for (String p : prefixes) {
+            boolean found = false;
+            for (String w : words) {
+                if (w.startsWith(p)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Book findBook(int bookId) {
+        if (bookId <= 0) return null;
+        BookState b = books.get(bookId);
+        return (b == null) ? null : b.snapshot();
+    }
+
+    @Override
+    public Loan borrowBook(String username, int bookId) {
+        if (username == null || username.isBlank()) throw new IllegalArgumentException("username required");
+        if (bookId <= 0) return null;
+        String u = username.trim();
+        if (users != null && users.findByUsername(u) == null) return null;
+        BookState b = books.get(bookId);
+        if (b == null) return null;
+
+        String key = userKey(u);
+        LoanRecord loan = new LoanRecord(nextLoanId.incrementAndGet(), u, bookId, LocalDate.now());
+        ConcurrentMap<Integer, LoanRecord> active = activeByUser.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        // claim the (user, book) slot first: a second active loan of the same book fails here
+        if (active.putIfAbsent(bookId, loan) != null) return null;
+        if (!b.takeCopy()) {
+            active.remove(bookId, loan);
+            return null;
+        }
+        activeByBook.computeIfAbsent(bookId, k -> ConcurrentHashMap.newKeySet()).add(loan);
+        loans.put(loan.id, loan);
+        loansByUser.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>()).put(loan.id, loan);
+        loan.state.set(ACTIVE);
+        return loan.snapshot();
+    }
+
+    @Override
+    public boolean returnBook(String username, int bookId) {
+        if (username == null || username.isBlank()) return false;
+        if (bookId <= 0) return false;
+        ConcurrentMap<Integer, LoanRecord> active = activeByUser.get(userKey(username.trim()));
+        if (active == null) return false;
+        LoanRecord loan = active.get(bookId);
+        // a loan still being created, or returned concurrently, does not count
+        if (loan == null || !loan.state.compareAndSet(ACTIVE, RETURNED)) return false;
+        loan.returnDate = LocalDate.now();
+        Set<LoanRecord> byBook = activeByBook.get(bookId);
+        if (byBook != null) byBook.remove(loan);
+        active.remove(bookId, loan);
+        BookState b = books.get(bookId);
+        if (b != null) b.putCopyBack();
+        return true;
+    }
+
+    @Override
+    public List<Loan> listLoansForUser(String username) {
+        if (username == null || username.isBlank()) return List.of();
+        Map<Integer, LoanRecord> mine = loansByUser.get(userKey(username.trim()));
+        if (mine == null) return List.of();
+        return snapshots(mine.values());
+    }
+
+    @Override
+    public List<Loan> listAllLoans() {
+        return snapshots(loans.values());
+    }
+
+    @Override
+    public List<Loan> listActiveLoans() {
+        List<Loan> out = new ArrayList<>();
+        for (LoanRecord l : loans.values()) {
+            if (l.isActive()) out.add(l.snapshot());
+        }
+        return out;
+    }
+
+    @Override
+    public List<Loan> listLoansBetween(LocalDate from, LocalDate to) {
+        if (from == null) throw new IllegalArgumentException("from required");
+        if (to == null) throw new IllegalArgumentException("to required");
+        List<Loan> out = new ArrayList<>();
+        for (LoanRecord l : loans.values()) {
+            if (!l.loanDate.isBefore(from) && !l.loanDate.isAfter(to)) out.add(l.snapshot());
+        }
+        out.sort(Comparator.comparing(Loan::getLoanDate).thenComparingInt(Loan::getId));
+        return out;
+    }
+
+    @Override
+    public List<Loan> listOverdueLoans(LocalDate dueBefore) {
+        if (dueBefore == null) throw new IllegalArgumentException("dueBefore required");
+        List<Loan> out = new ArrayList<>();
+        for (LoanRecord l : loans.values()) {
+            if (l.isActive() && l.loanDate.isBefore(dueBefore)) out.add(l.snapshot());
+        }
+        out.sort(Comparator.comparing(Loan::getLoanDate).thenComparingInt(Loan::getId));
+        return out;
+    }
+
+    @Override
+    public Page<Book> listBooksPage(BookSort sort, String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        BookSort s = (sort == null) ? BookSort.ID : sort;
+        PageCursor after = PageCursor.parse(cursor);
+
+        List<Book> out = new ArrayList<>();
+        String next = null;
+        if (s == BookSort.ID) {
+            for (BookState b : books.tailMap(after.getAfterId(), false).values()) {
+                Book snap = b.snapshot();
+                if (snap == null) continue;
+                if (out.size() == limit) {
+                    next = new PageCursor(null, out.get(out.size() - 1).getId()).encode();
+                    break;
+                }
+                out.add(snap);
+            }
+            return new Page<>(out, next);
+        }
+
+        // title/author order needs a sorted snapshot; fine for a memory-resident catalog
+        Comparator<Book> order = Comparator.comparing((Book b) -> sortKey(b, s), String.CASE_INSENSITIVE_ORDER)
+                .thenComparingInt(Book::getId);
+        List<Book> all = listBooks();
+        all.sort(order);
+        String afterKey = (after.getSortKey() == null) ? "" : after.getSortKey();
+        for (Book b : all) {
+            if (!after.isStart()) {
+                int c = String.CASE_INSENSITIVE_ORDER.compare(sortKey(b, s), afterKey);
+                if (c < 0 || (c == 0 && b.getId() <= after.getAfterId())) continue;
+            }
+            if (out.size() == limit) {
+                Book last = out.get(out.size() - 1);
+                next = new PageCursor(sortKey(last, s), last.getId()).encode();
+                break;
+            }
+            out.add(b);
+        }
+        return new Page<>(out, next);
+    }
+
+    private static String sortKey(Book b, BookSort s) {
+        return (s == BookSort.TITLE) ? b.getTitle() : b.getAuthor();
+    }
+
+    @Override
+    public Page<Loan> listLoansForUserPage(String username, String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        if (username == null || username.isBlank()) return new Page<>(List.of(), null);
+        NavigableMap<Integer, LoanRecord> mine = loansByUser.get(userKey(username.trim()));
+        if (mine == null) return new Page<>(List.of(), null);
+        return loanPage(mine, false, cursor, limit);
+    }
+
+    @Override
+    public Page<Loan> listAllLoansPage(String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        return loanPage(loans, false, cursor, limit);
+    }
+
+    @Override
+    public Page<Loan> listActiveLoansPage(String cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        return loanPage(loans, true, cursor, limit);
+    }
+
+    private static Page<Loan> loanPage(NavigableMap<Integer, LoanRecord> source, boolean activeOnly, String cursor, int limit) {
+        PageCursor after = PageCursor.parse(cursor);
+        List<Loan> out = new ArrayList<>();
+        for (LoanRecord l : source.tailMap(after.getAfterId(), false).values()) {
+            if (activeOnly && !l.isActive()) continue;
+            if (out.size() == limit) {
+                return new Page<>(out, new PageCursor(null, out.get(out.size() - 1).getId()).encode());
+            }
+            out.add(l.snapshot());
+        }
+        return new Page<>(out, null);
+    }
+
+    @Override
+    public void exportAllLoans(RowVisitor<Loan> visitor) throws IOException {
+        if (visitor == null) throw new IllegalArgumentException("visitor required");
+        for (LoanRecord l : loans.values()) visitor.visit(l.snapshot());
+    }
+
+    @Override
+    public void exportBooks(RowVisitor<Book> visitor) throws IOException {
+        if (visitor == null) throw new IllegalArgumentException("visitor required");
+        for (BookState b : books.values()) {
+            Book snap = b.snapshot();
+            if (snap != null) visitor.visit(snap);
+        }
+    }
+
+    @Override
+    public boolean hasAnyBooks() {
+        for (BookState b : books.values()) {
+            if (b.available.get() != DELETED) return true;
+        }
+        return false;
+    }
+
+    private static List<Loan> snapshots(Iterable<LoanRecord> records) {
+        List<Loan> out = new ArrayList<>();
+        for (LoanRecord l : records) out.add(l.snapshot());
+        return out;
+    }
+}
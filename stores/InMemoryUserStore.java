@@ -30,6 +30,32 @@ public final class InMemoryUserStore implements UserStore {
         return usersByUsername.remove(username.trim().toLowerCase()) != null;
     }
 
+    @Override
+    public boolean updatePasswordHash(String username, String newPasswordHash) {
+        if (username == null || username.isBlank()) return false;
+        if (newPasswordHash == null || newPasswordHash.isBlank()) return false;
+        String key = username.trim().toLowerCase();
+        User u = usersByUsername.get(key);
+        if (u == null) return false;
+        if (!newPasswordHash.equals(u.getPasswordHash())) {
+            usersByUsername.put(key, withPasswordHash(u, newPasswordHash));
+        }
+        return true;
+    }
+
+    private static User withPasswordHash(User u, String passwordHash) {
+        switch (u.getRole()) {
+            case STUDENT:
+                return new Student(u.getUsername(), passwordHash, true);
+            case LIBRARIAN:
+                return new Librarian(u.getUsername(), passwordHash, true);
+            case ADMIN:
+                return new Admin(u.getUsername(), passwordHash, true);
+            default:
+                throw new IllegalArgumentException("Unknown role: " + u.getRole());
+        }
+    }
+
     @Override
     public List<User> listAll() {
         return new ArrayList<>(usersByUsername.values());
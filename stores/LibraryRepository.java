@@ -1,8 +1,12 @@
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface LibraryRepository {
     Book addBook(String title, String author, int copies);
 
+    int addBooks(Iterable<BookDraft> books); // bulk insert, returns number of books added
+
     boolean removeBook(int bookId); // soft delete
 
     List<Book> listBooks();
@@ -21,6 +25,24 @@ public interface LibraryRepository {
 
     List<Loan> listActiveLoans();
 
+    List<Loan> listLoansBetween(LocalDate from, LocalDate to); // by loan date, both ends inclusive
+
+    List<Loan> listOverdueLoans(LocalDate dueBefore); // active loans taken out before dueBefore
+
+    // Keyset pagination: pass a null/blank cursor for the first page, then the previous page's nextCursor.
+    Page<Book> listBooksPage(BookSort sort, String cursor, int limit);
+
+    Page<Loan> listLoansForUserPage(String username, String cursor, int limit);
+
+    Page<Loan> listAllLoansPage(String cursor, int limit);
+
+    Page<Loan> listActiveLoansPage(String cursor, int limit);
+
+    // Streaming reads for exports: rows are handed to the visitor as they are read, never collected.
+    void exportAllLoans(RowVisitor<Loan> visitor) throws IOException;
+
+    void exportBooks(RowVisitor<Book> visitor) throws IOException;
+
     boolean hasAnyBooks();
 }
 
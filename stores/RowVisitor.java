@@ -0,0 +1,6 @@
+import java.io.IOException;
+
+// Receives rows one at a time from a streaming query (e.g. an export writing to an HTTP response).
+public interface RowVisitor<T> {
+    void visit(T row) throws IOException;
+}
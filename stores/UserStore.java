@@ -7,6 +7,8 @@ public interface UserStore {
 
     boolean delete(String username);
 
+    boolean updatePasswordHash(String username, String newPasswordHash);
+
     List<User> listAll();
 
     boolean hasAnyUsers();
@@ -0,0 +1,48 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque keyset cursor: the sort key and id of the last row on the previous page.
+public final class PageCursor {
+    private final String sortKey; // null when sorting by id only
+    private final int afterId;
+
+    public PageCursor(String sortKey, int afterId) {
+        if (afterId < 0) throw new IllegalArgumentException("afterId must be >= 0");
+        this.sortKey = sortKey;
+        this.afterId = afterId;
+    }
+
+    public static PageCursor start() {
+        return new PageCursor(null, 0);
+    }
+
+    // A blank token means "first page"; a malformed one is rejected.
+    public static PageCursor parse(String token) {
+        if (token == null || token.isBlank()) return start();
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('\n');
+            if (sep < 0) return new PageCursor(null, Integer.parseInt(raw));
+            return new PageCursor(raw.substring(sep + 1), Integer.parseInt(raw.substring(0, sep)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = (sortKey == null) ? String.valueOf(afterId) : afterId + "\n" + sortKey;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+
+    public boolean isStart() {
+        return afterId == 0 && sortKey == null;
+    }
+}
@@ -1,33 +1,128 @@
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
+// Password hashes are "pbkdf2$<iterations>$<base64 salt>$<base64 key>" (PBKDF2-HMAC-SHA256, 16 byte salt).
+// Hashes written by older builds are 64 hex chars of unsalted SHA-256; they still verify, and
+// needsRehash() reports them (and PBKDF2 hashes well below the current cost) so login can upgrade them.
+// The iteration count is set once at startup by calibrate(), so a hash costs about the same time on any machine.
 public final class PasswordUtil {
+    public static final int DEFAULT_ITERATIONS = 210_000;
+    public static final int MIN_ITERATIONS = 100_000;
+    public static final int MAX_ITERATIONS = 5_000_000;
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static volatile int iterations = DEFAULT_ITERATIONS;
+
     private PasswordUtil() {}
 
     public static String hash(String password) {
         if (password == null) throw new IllegalArgumentException("password cannot be null");
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(password.getBytes(StandardCharsets.UTF_8));
-            return toHex(digest);
-        } catch (NoSuchAlgorithmException e) {
-            // Should never happen for SHA-256 in standard JRE
-            throw new RuntimeException(e);
-        }
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        int n = iterations;
+        byte[] key = pbkdf2(password, salt, n, KEY_BITS);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + n + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(key);
     }
 
     public static boolean matches(String password, String passwordHash) {
         if (password == null || passwordHash == null) return false;
-        return hash(password).equals(passwordHash);
+        if (!passwordHash.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(
+                    sha256Hex(password).getBytes(StandardCharsets.US_ASCII),
+                    passwordHash.getBytes(StandardCharsets.US_ASCII));
+        }
+        String[] parts = passwordHash.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            int n = Integer.parseInt(parts[1]);
+            if (n <= 0 || n > MAX_ITERATIONS) return false;
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            if (expected.length == 0) return false;
+            return MessageDigest.isEqual(pbkdf2(password, salt, n, expected.length * 8), expected);
+        } catch (IllegalArgumentException e) { // bad number or base64
+            return false;
+        }
     }
 
-    private static String toHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
+    // Legacy SHA-256 hash, or PBKDF2 with under 3/4 of the configured iterations. calibrate() lands on
+    // a slightly different count at every startup; without the slack, every restart that measured a
+    // little faster would rehash on every login.
+    public static boolean needsRehash(String passwordHash) {
+        if (passwordHash == null || !passwordHash.startsWith(PREFIX)) return true;
+        String[] parts = passwordHash.split("\\$");
+        if (parts.length != 4) return true;
+        try {
+            return Integer.parseInt(parts[1]) < iterations / 4 * 3;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    // Picks the iteration count so one hash takes about targetMillis here (clamped to
+    // MIN_ITERATIONS..MAX_ITERATIONS) and uses it for every new hash; returns it.
+    public static int calibrate(long targetMillis) {
+        if (targetMillis <= 0) throw new IllegalArgumentException("targetMillis must be > 0");
+        int probe = 20_000;
+        byte[] salt = new byte[SALT_BYTES];
+        pbkdf2("calibration", salt, probe, KEY_BITS); // warm up the JIT first
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            pbkdf2("calibration", salt, probe, KEY_BITS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double perIteration = (double) best / probe;
+        long n = (long) (targetMillis * 1_000_000.0 / perIteration);
+        iterations = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, n));
+        return iterations;
+    }
+
+    public static int getIterations() {
+        return iterations;
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xFF;
+            out[i * 2] = HEX[v >>> 4];
+            out[i * 2 + 1] = HEX[v & 0x0F];
+        }
+        return new String(out);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations, int keyBits) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, keyBits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // PBKDF2WithHmacSHA256 ships with every Java 8+ runtime
+            throw new RuntimeException(e);
+        } finally {
+            spec.clearPassword();
         }
-        return sb.toString();
     }
-}
 
+    private static String sha256Hex(String password) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return toHex(md.digest(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Should never happen for SHA-256 in standard JRE
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Token bucket per key (username, remote address, ...): up to `burst` attempts at once, refilled at
+// `permitsPerMinute`. Each bucket is a single AtomicLong holding its "theoretical arrival time"
+// (GCRA, equivalent to a token bucket), updated with compare-and-set, so no locks are taken.
+// A bucket that has refilled completely carries no information and is dropped by sweep(); when more than
+// maxKeys buckets are live, new keys share one overflow bucket so memory stays bounded under a key spray.
+public final class RateLimiter implements AutoCloseable {
+    public static final int DEFAULT_MAX_KEYS = 100_000;
+    private static final String OVERFLOW_KEY = "\u0000overflow";
+
+    private final String name;
+    private final long intervalNanos; // time to earn one permit
+    private final long burstNanos;    // burst * intervalNanos
+    private final int maxKeys;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public RateLimiter(String name, int permitsPerMinute, int burst) {
+        this(name, permitsPerMinute, burst, DEFAULT_MAX_KEYS);
+    }
+
+    public RateLimiter(String name, int permitsPerMinute, int burst, int maxKeys) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("name required");
+        if (permitsPerMinute <= 0) throw new IllegalArgumentException("permitsPerMinute must be > 0");
+        if (burst <= 0) throw new IllegalArgumentException("burst must be > 0");
+        if (maxKeys <= 0) throw new IllegalArgumentException("maxKeys must be > 0");
+        this.name = name;
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+        this.burstNanos = intervalNanos * burst;
+        this.maxKeys = maxKeys;
+    }
+
+    public synchronized void start(long sweepPeriodSeconds) {
+        if (sweepPeriodSeconds <= 0) throw new IllegalArgumentException("sweepPeriodSeconds must be > 0");
+        if (sweeper != null) return;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rate-limit-sweeper-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                System.err.println("Rate limit sweep failed: " + e.getMessage());
+            }
+        }, sweepPeriodSeconds, sweepPeriodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    // Takes one permit for key. Returns 0 if allowed, otherwise how many milliseconds until a
+    // permit is available (nothing is taken in that case). Null/blank keys are not limited.
+    public long tryAcquire(String key) {
+        if (key == null || key.isBlank()) return 0;
+        AtomicLong bucket = bucketFor(key);
+        long now = System.nanoTime();
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            long over = next - now - burstNanos;
+            if (over > 0) {
+                rejected.increment();
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(over));
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    // Drops buckets that have refilled completely; returns how many.
+    public int sweep() {
+        long now = System.nanoTime();
+        int removed = 0;
+        for (Map.Entry<String, AtomicLong> e : buckets.entrySet()) {
+            AtomicLong bucket = e.getValue();
+            // a thread may still CAS a removed bucket; that attempt is then simply not remembered
+            if (bucket.get() - now <= 0 && buckets.remove(e.getKey(), bucket)) removed++;
+        }
+        evicted.add(removed);
+        return removed;
+    }
+
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucketFor(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) return bucket;
+        // a fresh bucket is full: its arrival time is not in the future
+        String k = (buckets.size() >= maxKeys) ? OVERFLOW_KEY : key;
+        return buckets.computeIfAbsent(k, x -> new AtomicLong(System.nanoTime()));
+    }
+
+    @Override
+    public String toString() {
+        return name + ": allowed=" + getAllowed() + " | rejected=" + getRejected() + " | evicted=" + getEvicted()
+                + " | buckets=" + size();
+    }
+}
@@ -1,35 +1,257 @@
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Login sessions shared by all HTTP worker threads.
+// A session ends after idleTimeout without requests (each request slides it forward) or absoluteTimeout
+// after login, whichever comes first. At most maxSessions are kept: when full, expired sessions are
+// dropped first and then a small batch of the least recently used. A daemon sweeper removes expired sessions in the
+// background. The User resolved at login is kept in the session, so requests need no UserStore lookup;
+// deleteSessionsFor(username) must be called when that user is deleted or changes password.
+// A removal listener hears about sessions that ended on their own (expired or evicted), not about deletes.
+public final class SessionManager implements SessionStore, AutoCloseable {
+    public static final long DEFAULT_IDLE_TIMEOUT_MINUTES = 30;
+    public static final long DEFAULT_ABSOLUTE_TIMEOUT_MINUTES = 12 * 60;
+    public static final int DEFAULT_MAX_SESSIONS = 10_000;
+    // lastAccess is only rewritten when it moved by at least this much, so hot sessions don't
+    // write the same field from every worker thread
+    private static final long RENEW_GRANULARITY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // sessions evicted at once when full, so a login storm pays for one scan per batch, not per login
+    private static final int MAX_EVICTION_BATCH = 64;
 
-public final class SessionManager {
     private static final class Session {
-        private final String username;
+        private final User user;
+        private final long createdNanos;
+        private volatile long lastAccessNanos;
 
-        private Session(String username) {
-            this.username = username;
+        private Session(User user, long now) {
+            this.user = user;
+            this.createdNanos = now;
+            this.lastAccessNanos = now;
         }
     }
 
-    private final Map<String, Session> sessionsById = new HashMap<>();
+    private final long idleTimeoutNanos;
+    private final long absoluteTimeoutNanos;
+    private final int maxSessions;
+    private final int evictionBatch;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Map<String, Session> sessionsById = new ConcurrentHashMap<>();
+    private volatile Consumer<String> removalListener = id -> {};
+    private ScheduledExecutorService sweeper;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public SessionManager() {
+        this(DEFAULT_IDLE_TIMEOUT_MINUTES, DEFAULT_ABSOLUTE_TIMEOUT_MINUTES, DEFAULT_MAX_SESSIONS);
+    }
+
+    public SessionManager(long idleTimeoutMinutes, long absoluteTimeoutMinutes, int maxSessions) {
+        if (idleTimeoutMinutes <= 0) throw new IllegalArgumentException("idleTimeoutMinutes must be > 0");
+        if (absoluteTimeoutMinutes < idleTimeoutMinutes) throw new IllegalArgumentException("absoluteTimeoutMinutes must be >= idleTimeoutMinutes");
+        if (maxSessions <= 0) throw new IllegalArgumentException("maxSessions must be > 0");
+        this.idleTimeoutNanos = TimeUnit.MINUTES.toNanos(idleTimeoutMinutes);
+        this.absoluteTimeoutNanos = TimeUnit.MINUTES.toNanos(absoluteTimeoutMinutes);
+        this.maxSessions = maxSessions;
+        this.evictionBatch = Math.max(1, Math.min(MAX_EVICTION_BATCH, maxSessions / 10));
+    }
+
+    public synchronized void start(long sweepPeriodSeconds) {
+        if (sweepPeriodSeconds <= 0) throw new IllegalArgumentException("sweepPeriodSeconds must be > 0");
+        if (sweeper != null) return;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                System.err.println("Session sweep failed: " + e.getMessage());
+            }
+        }, sweepPeriodSeconds, sweepPeriodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    public void setRemovalListener(Consumer<String> listener) {
+        if (listener == null) throw new IllegalArgumentException("listener required");
+        this.removalListener = listener;
+    }
 
+    @Override
     public String createSession(User user) {
-        if (user == null) throw new IllegalArgumentException("user required");
         String sessionId = UUID.randomUUID().toString();
-        sessionsById.put(sessionId, new Session(user.getUsername()));
+        addSession(sessionId, user);
         return sessionId;
     }
 
+    // Starts a session under an id chosen by the caller (e.g. a hash of the id the client holds).
+    public void addSession(String sessionId, User user) {
+        if (sessionId == null) throw new IllegalArgumentException("sessionId required");
+        if (user == null) throw new IllegalArgumentException("user required");
+        if (sessionsById.size() >= maxSessions) makeRoom();
+        sessionsById.put(sessionId, new Session(user, System.nanoTime()));
+        created.increment();
+        // logins racing past the check above can overfill by a few; the next one to notice trims it back
+        if (sessionsById.size() > maxSessions) makeRoom();
+    }
+
+    @Override
     public void deleteSession(String sessionId) {
         if (sessionId == null) return;
         sessionsById.remove(sessionId);
     }
 
-    public User getUser(String sessionId, AppContext app) {
-        if (sessionId == null || app == null) return null;
+    // Ends every session of this user (account deleted, password changed); returns how many.
+    @Override
+    public int deleteSessionsFor(String username) {
+        if (username == null || username.isBlank()) return 0;
+        String name = username.trim();
+        int removed = 0;
+        for (Map.Entry<String, Session> e : sessionsById.entrySet()) {
+            if (e.getValue().user.getUsername().equalsIgnoreCase(name)
+                    && sessionsById.remove(e.getKey(), e.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // The user of a live session (renewing its idle timeout), or null.
+    @Override
+    public User getUser(String sessionId) {
+        if (sessionId == null) return null;
         Session s = sessionsById.get(sessionId);
         if (s == null) return null;
-        return app.findUser(s.username);
+        long now = System.nanoTime();
+        if (isExpired(s, now)) {
+            if (sessionsById.remove(sessionId, s)) {
+                expired.increment();
+                removalListener.accept(sessionId);
+            }
+            return null;
+        }
+        if (now - s.lastAccessNanos >= RENEW_GRANULARITY_NANOS) s.lastAccessNanos = now;
+        return s.user;
+    }
+
+    // Puts back a session saved before a restart (wall-clock times); false if it has expired or the store is full.
+    public boolean restore(String sessionId, User user, long createdAtMillis, long lastSeenMillis) {
+        if (sessionId == null || user == null) return false;
+        long nowNanos = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        Session s = new Session(user, nowNanos - TimeUnit.MILLISECONDS.toNanos(nowMillis - createdAtMillis));
+        s.lastAccessNanos = nowNanos - TimeUnit.MILLISECONDS.toNanos(nowMillis - lastSeenMillis);
+        if (isExpired(s, nowNanos) || sessionsById.size() >= maxSessions) return false;
+        sessionsById.putIfAbsent(sessionId, s);
+        return true;
+    }
+
+    // Removes expired sessions; returns how many.
+    public int sweep() {
+        long now = System.nanoTime();
+        int removed = 0;
+        for (Map.Entry<String, Session> e : sessionsById.entrySet()) {
+            if (isExpired(e.getValue(), now) && sessionsById.remove(e.getKey(), e.getValue())) {
+                removed++;
+                removalListener.accept(e.getKey());
+            }
+        }
+        expired.add(removed);
+        return removed;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos);
     }
-}
 
+    public long getAbsoluteTimeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(absoluteTimeoutNanos);
+    }
+
+    public int size() {
+        return sessionsById.size();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    // sessions dropped while still live because the store was full
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    private boolean isExpired(Session s, long now) {
+        return now - s.lastAccessNanos >= idleTimeoutNanos || now - s.createdNanos >= absoluteTimeoutNanos;
+    }
+
+    private static final class Candidate {
+        private final String id;
+        private final Session session;
+        private final long lastAccessNanos; // read once: the live field may move while the heap orders it
+
+        private Candidate(String id, Session session) {
+            this.id = id;
+            this.session = session;
+            this.lastAccessNanos = session.lastAccessNanos;
+        }
+    }
+
+    // Only runs when the store is full, so the full scans stay off the normal login path. One thread
+    // at a time: logins arriving meanwhile wait, then find the room already made. Expired sessions go
+    // first; if that is not enough, the least recently used are evicted in one scan, leaving
+    // evictionBatch free slots for the logins that follow.
+    private void makeRoom() {
+        evictionLock.lock();
+        try {
+            if (sessionsById.size() < maxSessions) return;
+            if (sweep() > 0 && sessionsById.size() < maxSessions) return;
+            int toEvict = Math.min(sessionsById.size() - maxSessions + evictionBatch, sessionsById.size());
+            if (toEvict <= 0) return;
+            // keeps the toEvict oldest seen so far; the head is the newest of them
+            Comparator<Candidate> newestFirst = (a, b) -> Long.compare(b.lastAccessNanos - a.lastAccessNanos, 0);
+            PriorityQueue<Candidate> oldest = new PriorityQueue<>(toEvict + 1, newestFirst);
+            for (Map.Entry<String, Session> e : sessionsById.entrySet()) {
+                oldest.add(new Candidate(e.getKey(), e.getValue()));
+                if (oldest.size() > toEvict) oldest.poll();
+            }
+            for (Candidate c : oldest) {
+                if (sessionsById.remove(c.id, c.session)) {
+                    evicted.increment();
+                    removalListener.accept(c.id);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "sessions=" + size() + " | created=" + getCreated() + " | expired=" + getExpired()
+                + " | evicted=" + getEvicted();
+    }
+}
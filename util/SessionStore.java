@@ -0,0 +1,9 @@
+public interface SessionStore {
+    String createSession(User user); // returns the cookie value
+
+    void deleteSession(String sessionId);
+
+    int deleteSessionsFor(String username); // user deleted or password changed
+
+    User getUser(String sessionId); // null if unknown, expired or revoked
+}
@@ -0,0 +1,240 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Stateless sessions: the cookie itself carries username, role, issue time, a random token id and a
+// credential fingerprint, signed with HMAC-SHA256. Any node holding the same secret accepts it, and a
+// restart doesn't log anyone out. A token is valid for maxAge after login (no sliding renewal).
+// The fingerprint is a keyed hash of the user's password hash, checked against the (cached) UserStore on
+// every request: deleting the user or changing the password invalidates their tokens on every node and
+// across restarts (other nodes notice within their user cache TTL).
+// Logout only goes into a small in-memory revocation list, dropped once the token has expired anyway; it
+// is per node and lost on restart, so a logged-out cookie replayed to another node or after a restart
+// is accepted until it expires (the browser's copy is cleared at logout).
+// Token: base64url("v2|" + base64url(username) + "|" + role + "|" + issuedAtMillis + "|" + tokenId + "|" + fingerprint) + "." + base64url(hmac)
+public final class SignedSessionTokens implements SessionStore, AutoCloseable {
+    public static final long DEFAULT_MAX_AGE_MINUTES = 12 * 60;
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final String VERSION = "v2";
+    private static final int FINGERPRINT_BYTES = 12;
+
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64D = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final UserStore users;
+    private final long maxAgeMillis;
+    private final ThreadLocal<Mac> macs; // Mac is not thread-safe
+    private final SecureRandom random = new SecureRandom();
+    // token id -> expiry of that token (logout)
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    // lower-case username -> tokens issued at or before this time are invalid; takes effect on this node
+    // at once, while the credential fingerprint covers other nodes and restarts
+    private final Map<String, Long> revokedUsers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public SignedSessionTokens(byte[] secret, UserStore users) {
+        this(secret, users, DEFAULT_MAX_AGE_MINUTES);
+    }
+
+    public SignedSessionTokens(byte[] secret, UserStore users, long maxAgeMinutes) {
+        if (secret == null || secret.length < MIN_SECRET_BYTES) throw new IllegalArgumentException("secret of at least " + MIN_SECRET_BYTES + " bytes required");
+        if (users == null) throw new IllegalArgumentException("users required");
+        if (maxAgeMinutes <= 0) throw new IllegalArgumentException("maxAgeMinutes must be > 0");
+        this.key = new SecretKeySpec(secret.clone(), "HmacSHA256");
+        this.users = users;
+        this.maxAgeMillis = TimeUnit.MINUTES.toMillis(maxAgeMinutes);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        newMac(); // fail fast on a bad key
+    }
+
+    // Random secret: tokens only work on this node and until it restarts.
+    public static byte[] randomSecret() {
+        byte[] secret = new byte[MIN_SECRET_BYTES];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    public synchronized void start(long sweepPeriodSeconds) {
+        if (sweepPeriodSeconds <= 0) throw new IllegalArgumentException("sweepPeriodSeconds must be > 0");
+        if (sweeper != null) return;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-revocation-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                System.err.println("Revocation sweep failed: " + e.getMessage());
+            }
+        }, sweepPeriodSeconds, sweepPeriodSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    @Override
+    public String createSession(User user) {
+        if (user == null) throw new IllegalArgumentException("user required");
+        byte[] id = new byte[16];
+        random.nextBytes(id);
+        String payload = VERSION + "|" + B64.encodeToString(user.getUsername().getBytes(StandardCharsets.UTF_8))
+                + "|" + user.getRole().name() + "|" + System.currentTimeMillis() + "|" + B64.encodeToString(id)
+                + "|" + fingerprint(user.getPasswordHash());
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+        issued.increment();
+        return B64.encodeToString(body) + "." + B64.encodeToString(sign(body));
+    }
+
+    @Override
+    public void deleteSession(String sessionId) {
+        Claims c = verify(sessionId);
+        if (c == null) return;
+        revokedTokens.put(c.tokenId, c.issuedAtMillis + maxAgeMillis);
+    }
+
+    // Revokes every token issued to this user so far; returns 0 because tokens are not counted.
+    @Override
+    public int deleteSessionsFor(String username) {
+        if (username == null || username.isBlank()) return 0;
+        revokedUsers.put(username.trim().toLowerCase(), System.currentTimeMillis());
+        return 0;
+    }
+
+    @Override
+    public User getUser(String sessionId) {
+        Claims c = verify(sessionId);
+        if (c == null) return null;
+        if (revokedTokens.containsKey(c.tokenId)) {
+            rejected.increment();
+            return null;
+        }
+        Long revokedAt = revokedUsers.get(c.username.toLowerCase());
+        if (revokedAt != null && c.issuedAtMillis <= revokedAt) {
+            rejected.increment();
+            return null;
+        }
+        // deleted user, changed password or changed role: the token no longer describes this account
+        User user = users.findByUsername(c.username);
+        if (user == null || user.getRole() != c.role
+                || !MessageDigest.isEqual(fingerprint(user.getPasswordHash()).getBytes(StandardCharsets.US_ASCII),
+                                          c.fingerprint.getBytes(StandardCharsets.US_ASCII))) {
+            rejected.increment();
+            return null;
+        }
+        return user;
+    }
+
+    // Drops revocations that only cover already expired tokens; returns how many.
+    public int sweep() {
+        long now = System.currentTimeMillis();
+        int before = revokedTokens.size() + revokedUsers.size();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        revokedUsers.values().removeIf(revokedAt -> revokedAt + maxAgeMillis <= now);
+        return before - revokedTokens.size() - revokedUsers.size();
+    }
+
+    public long getIssued() {
+        return issued.sum();
+    }
+
+    // bad signature, malformed, expired or revoked
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public int getRevocationCount() {
+        return revokedTokens.size() + revokedUsers.size();
+    }
+
+    private static final class Claims {
+        private final String username;
+        private final Role role;
+        private final long issuedAtMillis;
+        private final String tokenId;
+        private final String fingerprint;
+
+        private Claims(String username, Role role, long issuedAtMillis, String tokenId, String fingerprint) {
+            this.username = username;
+            this.role = role;
+            this.issuedAtMillis = issuedAtMillis;
+            this.tokenId = tokenId;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    // Signature, format and age checked; revocation is not.
+    private Claims verify(String token) {
+        if (token == null || token.isEmpty()) return null;
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot != token.lastIndexOf('.')) return reject();
+        try {
+            byte[] body = B64D.decode(token.substring(0, dot));
+            byte[] sig = B64D.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(sign(body), sig)) return reject();
+
+            String[] parts = new String(body, StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 6 || !VERSION.equals(parts[0])) return reject();
+            String username = new String(B64D.decode(parts[1]), StandardCharsets.UTF_8);
+            Role role = Role.valueOf(parts[2]);
+            long issuedAt = Long.parseLong(parts[3]);
+            long age = System.currentTimeMillis() - issuedAt;
+            if (age >= maxAgeMillis || age < -TimeUnit.MINUTES.toMillis(5)) return reject(); // allow small clock skew
+            return new Claims(username, role, issuedAt, parts[4], parts[5]);
+        } catch (IllegalArgumentException e) { // bad base64, role or number
+            return reject();
+        }
+    }
+
+    private Claims reject() {
+        rejected.increment();
+        return null;
+    }
+
+    // Keyed, so the cookie reveals nothing about the password hash itself.
+    private String fingerprint(String passwordHash) {
+        byte[] mac = sign(("credential|" + passwordHash).getBytes(StandardCharsets.UTF_8));
+        return B64.encodeToString(Arrays.copyOf(mac, FINGERPRINT_BYTES));
+    }
+
+    private byte[] sign(byte[] body) {
+        Mac mac = macs.get();
+        return mac.doFinal(body); // doFinal also resets the Mac for the next call
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "issued=" + getIssued() + " | rejected=" + getRejected() + " | revocations=" + getRevocationCount();
+    }
+}
@@ -1,24 +1,42 @@
 import com.sun.net.httpserver.HttpExchange;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
 public final class WebHandlers {
+    private static final String BUSY_MESSAGE = "The library is busy right now, please try again.";
+
     private final AppContext app;
-    private final SessionManager sessions;
+    private final SessionStore sessions;
     private final String cookieName;
+    private final RateLimiter loginsPerAddress;
+    private final RateLimiter loginsPerUser;
 
-    public WebHandlers(AppContext app, SessionManager sessions, String cookieName) {
+    public WebHandlers(AppContext app, SessionStore sessions, String cookieName,
+                       RateLimiter loginsPerAddress, RateLimiter loginsPerUser) {
         if (app == null) throw new IllegalArgumentException("app required");
         if (sessions == null) throw new IllegalArgumentException("sessions required");
         if (cookieName == null || cookieName.isBlank()) throw new IllegalArgumentException("cookieName required");
+        if (loginsPerAddress == null) throw new IllegalArgumentException("loginsPerAddress required");
+        if (loginsPerUser == null) throw new IllegalArgumentException("loginsPerUser required");
         this.app = app;
         this.sessions = sessions;
         this.cookieName = cookieName;
+        this.loginsPerAddress = loginsPerAddress;
+        this.loginsPerUser = loginsPerUser;
     }
 
     public void handleAssets(HttpExchange ex) throws IOException {
@@ -55,10 +73,27 @@ public final class WebHandlers {
 
     public void handleLogin(HttpExchange ex) throws IOException {
         if ("POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            // checked before the user lookup and password hash, so rejected attempts cost almost nothing
+            long waitMillis = loginsPerAddress.tryAcquire(ex.getRemoteAddress().getAddress().getHostAddress());
+            if (waitMillis > 0) {
+                tooManyLogins(ex, waitMillis);
+                return;
+            }
             Map<String, String> form = WebHttpUtil.readForm(ex);
             String username = form.getOrDefault("username", "");
             String password = form.getOrDefault("password", "");
-            User user = app.auth().authenticate(username, password);
+            waitMillis = loginsPerUser.tryAcquire(username.trim().toLowerCase());
+            if (waitMillis > 0) {
+                tooManyLogins(ex, waitMillis);
+                return;
+            }
+            User user;
+            try {
+                user = app.auth().authenticate(username, password);
+            } catch (AuthService.AuthBusyException e) {
+                WebHttpUtil.sendHtml(ex, 503, WebViews.loginForm(e.getMessage(), null));
+                return;
+            }
             if (user == null) {
                 WebHttpUtil.sendHtml(ex, 200, WebViews.loginForm("Invalid username/password.", null));
                 return;
@@ -73,6 +108,13 @@ public final class WebHandlers {
         WebHttpUtil.sendHtml(ex, 200, WebViews.loginForm(null, msg));
     }
 
+    private static void tooManyLogins(HttpExchange ex, long waitMillis) throws IOException {
+        long seconds = Math.max(1, (waitMillis + 999) / 1000);
+        ex.getResponseHeaders().set("Retry-After", Long.toString(seconds));
+        WebHttpUtil.sendHtml(ex, 429, WebViews.loginForm(
+                "Too many login attempts. Please wait " + seconds + " seconds and try again.", null));
+    }
+
     public void handleRegister(HttpExchange ex) throws IOException {
         if ("POST".equalsIgnoreCase(ex.getRequestMethod())) {
             Map<String, String> form = WebHttpUtil.readForm(ex);
@@ -125,7 +167,14 @@ public final class WebHandlers {
         requireMethod(ex, "POST");
         Map<String, String> form = WebHttpUtil.readForm(ex);
         int bookId = WebHttpUtil.parseInt(form.get("bookId"));
-        Loan loan = (bookId <= 0) ? null : app.library().borrowBook(user.getUsername(), bookId);
+        Loan loan;
+        try {
+            loan = (bookId <= 0) ? null : app.library().borrowBook(user.getUsername(), bookId);
+        } catch (RuntimeException e) {
+            if (!SqliteRetry.isContention(e)) throw e;
+            WebHttpUtil.redirect(ex, "/student?msg=" + WebHttpUtil.url(BUSY_MESSAGE));
+            return;
+        }
         String msg = (loan == null) ? "Borrow failed." : "Borrowed successfully (loan " + loan.getId() + ").";
         WebHttpUtil.redirect(ex, "/student?msg=" + WebHttpUtil.url(msg));
     }
@@ -135,7 +184,14 @@ public final class WebHandlers {
         requireMethod(ex, "POST");
         Map<String, String> form = WebHttpUtil.readForm(ex);
         int bookId = WebHttpUtil.parseInt(form.get("bookId"));
-        boolean ok = bookId > 0 && app.library().returnBook(user.getUsername(), bookId);
+        boolean ok;
+        try {
+            ok = bookId > 0 && app.library().returnBook(user.getUsername(), bookId);
+        } catch (RuntimeException e) {
+            if (!SqliteRetry.isContention(e)) throw e;
+            WebHttpUtil.redirect(ex, "/student?msg=" + WebHttpUtil.url(BUSY_MESSAGE));
+            return;
+        }
         WebHttpUtil.redirect(ex, "/student?msg=" + WebHttpUtil.url(ok ? "Returned successfully." : "Return failed."));
     }
 
@@ -169,6 +225,106 @@ public final class WebHandlers {
         WebHttpUtil.redirect(ex, "/librarian?msg=" + WebHttpUtil.url(ok ? "Removed." : "Remove failed."));
     }
 
+    // Request body is the raw CSV file; progress is streamed back as NDJSON while the import runs.
+    public void handleLibrarianImportBooks(HttpExchange ex) throws IOException {
+        requireRole(ex, Role.LIBRARIAN);
+        requireMethod(ex, "POST");
+        ex.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        ex.sendResponseHeaders(200, 0); // 0 = chunked, we do not know the length up front
+        try (Reader in = new InputStreamReader(ex.getRequestBody(), StandardCharsets.UTF_8);
+             Writer out = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8))) {
+            CatalogCsvImporter.Result r;
+            try {
+                r = new CatalogCsvImporter(app.library()).importFrom(in, (rows, imported, rejected) -> {
+                    try {
+                        out.write(importProgressJson(rows, imported, rejected) + "\n");
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                out.write("{\"error\":\"" + WebHttpUtil.jsonEsc(String.valueOf(e.getMessage())) + "\"}\n");
+                return;
+            }
+            StringBuilder rejectedRows = new StringBuilder("[");
+            for (int i = 0; i < r.getRejectedDetails().size(); i++) {
+                if (i > 0) rejectedRows.append(",");
+                rejectedRows.append("\"").append(WebHttpUtil.jsonEsc(r.getRejectedDetails().get(i))).append("\"");
+            }
+            rejectedRows.append("]");
+            String summary = importProgressJson(r.getRowsRead(), r.getImported(), r.getRejected());
+            out.write(summary.substring(0, summary.length() - 1)
+                    + ",\"done\":true,\"rejectedRows\":" + rejectedRows + "}\n");
+        }
+    }
+
+    private static String importProgressJson(long rows, long imported, long rejected) {
+        return "{\"rowsRead\":" + rows + ",\"imported\":" + imported + ",\"rejected\":" + rejected + "}";
+    }
+
+    // ===== Export (streamed) =====
+    // /api/librarian/export/loans?format=csv|ndjson: rows go straight from the JDBC cursor to the
+    // chunked response body, so memory stays flat however many loans exist.
+    public void handleApiLibrarianExportLoans(HttpExchange ex) throws IOException {
+        apiRequireRole(ex, Role.LIBRARIAN);
+        boolean csv = isCsvFormat(ex);
+        try (Writer out = startExport(ex, "loans", csv)) {
+            StringBuilder line = new StringBuilder(128);
+            if (csv) out.write("id,username,bookId,loanDate,returnDate\n");
+            app.library().exportAllLoans(l -> {
+                line.setLength(0);
+                if (csv) {
+                    line.append(l.getId()).append(',')
+                            .append(WebHttpUtil.csvEsc(l.getUsername())).append(',')
+                            .append(l.getBookId()).append(',')
+                            .append(l.getLoanDate()).append(',')
+                            .append(l.getReturnDate() == null ? "" : l.getReturnDate().toString());
+                } else {
+                    appendLoanJson(line, l);
+                }
+                line.append('\n');
+                out.write(line.toString());
+            });
+        }
+    }
+
+    public void handleApiLibrarianExportBooks(HttpExchange ex) throws IOException {
+        apiRequireRole(ex, Role.LIBRARIAN);
+        boolean csv = isCsvFormat(ex);
+        try (Writer out = startExport(ex, "books", csv)) {
+            StringBuilder line = new StringBuilder(128);
+            if (csv) out.write("id,title,author,availableCopies,totalCopies\n");
+            app.library().exportBooks(bk -> {
+                line.setLength(0);
+                if (csv) {
+                    line.append(bk.getId()).append(',')
+                            .append(WebHttpUtil.csvEsc(bk.getTitle())).append(',')
+                            .append(WebHttpUtil.csvEsc(bk.getAuthor())).append(',')
+                            .append(bk.getAvailableCopies()).append(',')
+                            .append(bk.getTotalCopies());
+                } else {
+                    appendBookJson(line, bk);
+                }
+                line.append('\n');
+                out.write(line.toString());
+            });
+        }
+    }
+
+    private static boolean isCsvFormat(HttpExchange ex) {
+        String format = WebHttpUtil.readQueryParam(ex.getRequestURI(), "format");
+        return !"ndjson".equalsIgnoreCase(format == null ? "" : format.trim());
+    }
+
+    private static Writer startExport(HttpExchange ex, String name, boolean csv) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", csv ? "text/csv; charset=utf-8" : "application/x-ndjson; charset=utf-8");
+        ex.getResponseHeaders().set("Content-Disposition",
+                "attachment; filename=\"" + name + (csv ? ".csv" : ".ndjson") + "\"");
+        ex.sendResponseHeaders(200, 0); // chunked transfer encoding
+        return new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
     // ===== Admin =====
     public void handleAdmin(HttpExchange ex) throws IOException {
         requireRole(ex, Role.ADMIN);
@@ -192,26 +348,70 @@ public final class WebHandlers {
     public void handleApiStudentBooks(HttpExchange ex) throws IOException {
         apiRequireRole(ex, Role.STUDENT);
         String q = WebHttpUtil.readQueryParam(ex.getRequestURI(), "q");
-        List<Book> books = (q == null || q.isBlank()) ? app.library().listBooks() : app.library().searchBooks(q);
-        WebHttpUtil.sendJson(ex, 200, booksToJson(books));
+        BookSort sort = BookSort.fromParam(WebHttpUtil.readQueryParam(ex.getRequestURI(), "sort"));
+        if (q == null || q.isBlank()) {
+            sendBooksPage(ex, sort);
+            return;
+        }
+        // search results are bounded by the query; sort them here instead of in the browser
+        List<Book> books = new ArrayList<>(app.library().searchBooks(q));
+        if (sort == BookSort.TITLE) books.sort(Comparator.comparing(Book::getTitle, String.CASE_INSENSITIVE_ORDER));
+        else if (sort == BookSort.AUTHOR) books.sort(Comparator.comparing(Book::getAuthor, String.CASE_INSENSITIVE_ORDER));
+        WebHttpUtil.sendJson(ex, 200, pageToJson(booksToJson(books), null));
     }
 
     public void handleApiStudentLoans(HttpExchange ex) throws IOException {
         User u = apiRequireRole(ex, Role.STUDENT);
-        List<Loan> loans = app.library().listLoansForUser(u.getUsername());
-        WebHttpUtil.sendJson(ex, 200, loansToJson(loans));
+        Page<Loan> page;
+        try {
+            page = app.library().listLoansForUserPage(u.getUsername(), readCursor(ex), readLimit(ex));
+        } catch (IllegalArgumentException e) {
+            WebHttpUtil.sendJson(ex, 400, "{\"error\":\"invalid cursor\"}");
+            return;
+        }
+        WebHttpUtil.sendJson(ex, 200, pageToJson(loansToJson(page.getItems()), page.getNextCursor()));
     }
 
     public void handleApiLibrarianBooks(HttpExchange ex) throws IOException {
         apiRequireRole(ex, Role.LIBRARIAN);
-        List<Book> books = app.library().listBooks();
-        WebHttpUtil.sendJson(ex, 200, booksToJson(books));
+        sendBooksPage(ex, BookSort.fromParam(WebHttpUtil.readQueryParam(ex.getRequestURI(), "sort")));
     }
 
     public void handleApiLibrarianActiveLoans(HttpExchange ex) throws IOException {
         apiRequireRole(ex, Role.LIBRARIAN);
-        List<Loan> loans = app.library().listActiveLoans();
-        WebHttpUtil.sendJson(ex, 200, loansToJson(loans));
+        Page<Loan> page;
+        try {
+            String cursor = readCursor(ex);
+            int limit = readLimit(ex);
+            // ?fresh=1 skips the report replica (e.g. right after processing a return)
+            page = "1".equals(WebHttpUtil.readQueryParam(ex.getRequestURI(), "fresh"))
+                    ? ReplicaRoutingLibraryRepository.onPrimary(() -> app.library().listActiveLoansPage(cursor, limit))
+                    : app.library().listActiveLoansPage(cursor, limit);
+        } catch (IllegalArgumentException e) {
+            WebHttpUtil.sendJson(ex, 400, "{\"error\":\"invalid cursor\"}");
+            return;
+        }
+        WebHttpUtil.sendJson(ex, 200, pageToJson(loansToJson(page.getItems()), page.getNextCursor()));
+    }
+
+    private void sendBooksPage(HttpExchange ex, BookSort sort) throws IOException {
+        Page<Book> page;
+        try {
+            page = app.library().listBooksPage(sort, readCursor(ex), readLimit(ex));
+        } catch (IllegalArgumentException e) {
+            WebHttpUtil.sendJson(ex, 400, "{\"error\":\"invalid cursor\"}");
+            return;
+        }
+        WebHttpUtil.sendJson(ex, 200, pageToJson(booksToJson(page.getItems()), page.getNextCursor()));
+    }
+
+    private static String readCursor(HttpExchange ex) {
+        return WebHttpUtil.readQueryParam(ex.getRequestURI(), "cursor");
+    }
+
+    // Missing/invalid -> 0, which LibraryService turns into the default page size.
+    private static int readLimit(HttpExchange ex) {
+        return Math.max(0, WebHttpUtil.parseInt(WebHttpUtil.readQueryParam(ex.getRequestURI(), "limit")));
     }
 
     public void handleApiAdminUsers(HttpExchange ex) throws IOException {
@@ -243,6 +443,7 @@ public final class WebHandlers {
         String username = form.getOrDefault("username", "");
         String password = form.getOrDefault("password", "");
         boolean ok = app.users().resetPassword(username, password);
+        if (ok) sessions.deleteSessionsFor(username);
         WebHttpUtil.redirect(ex, "/admin?msg=" + WebHttpUtil.url(ok ? "Password updated." : "User not found."));
     }
 
@@ -256,6 +457,7 @@ public final class WebHandlers {
             return;
         }
         boolean ok = app.users().deleteUser(username);
+        if (ok) sessions.deleteSessionsFor(username);
         WebHttpUtil.redirect(ex, "/admin?msg=" + WebHttpUtil.url(ok ? "Deleted." : "User not found."));
     }
 
@@ -271,7 +473,7 @@ public final class WebHandlers {
 
     private User requireUserOrNull(HttpExchange ex) {
         String sessionId = WebHttpUtil.readCookie(ex, cookieName);
-        return sessions.getUser(sessionId, app);
+        return sessions.getUser(sessionId);
     }
 
     private User requireRole(HttpExchange ex, Role role) throws IOException {
@@ -331,41 +533,52 @@ public final class WebHandlers {
         if (books != null) {
             for (int i = 0; i < books.size(); i++) {
                 if (i > 0) b.append(",");
-                Book bk = books.get(i);
-                b.append("{")
-                        .append("\"id\":").append(bk.getId()).append(",")
-                        .append("\"title\":\"").append(WebHttpUtil.jsonEsc(bk.getTitle())).append("\",")
-                        .append("\"author\":\"").append(WebHttpUtil.jsonEsc(bk.getAuthor())).append("\",")
-                        .append("\"availableCopies\":").append(bk.getAvailableCopies()).append(",")
-                        .append("\"totalCopies\":").append(bk.getTotalCopies())
-                        .append("}");
+                appendBookJson(b, books.get(i));
             }
         }
         b.append("]");
         return b.toString();
     }
 
+    private static void appendBookJson(StringBuilder b, Book bk) {
+        b.append("{")
+                .append("\"id\":").append(bk.getId()).append(",")
+                .append("\"title\":\"").append(WebHttpUtil.jsonEsc(bk.getTitle())).append("\",")
+                .append("\"author\":\"").append(WebHttpUtil.jsonEsc(bk.getAuthor())).append("\",")
+                .append("\"availableCopies\":").append(bk.getAvailableCopies()).append(",")
+                .append("\"totalCopies\":").append(bk.getTotalCopies())
+                .append("}");
+    }
+
+    private static String pageToJson(String itemsJson, String nextCursor) {
+        String next = (nextCursor == null) ? "null" : ("\"" + WebHttpUtil.jsonEsc(nextCursor) + "\"");
+        return "{\"items\":" + itemsJson + ",\"nextCursor\":" + next + "}";
+    }
+
     private static String loansToJson(List<Loan> loans) {
         StringBuilder b = new StringBuilder();
         b.append("[");
         if (loans != null) {
             for (int i = 0; i < loans.size(); i++) {
                 if (i > 0) b.append(",");
-                Loan l = loans.get(i);
-                String returnDate = l.getReturnDate() == null ? "null" : ("\"" + WebHttpUtil.jsonEsc(String.valueOf(l.getReturnDate())) + "\"");
-                b.append("{")
-                        .append("\"id\":").append(l.getId()).append(",")
-                        .append("\"username\":\"").append(WebHttpUtil.jsonEsc(l.getUsername())).append("\",")
-                        .append("\"bookId\":").append(l.getBookId()).append(",")
-                        .append("\"loanDate\":\"").append(WebHttpUtil.jsonEsc(String.valueOf(l.getLoanDate()))).append("\",")
-                        .append("\"returnDate\":").append(returnDate)
-                        .append("}");
+                appendLoanJson(b, loans.get(i));
             }
         }
         b.append("]");
         return b.toString();
     }
 
+    private static void appendLoanJson(StringBuilder b, Loan l) {
+        String returnDate = l.getReturnDate() == null ? "null" : ("\"" + WebHttpUtil.jsonEsc(String.valueOf(l.getReturnDate())) + "\"");
+        b.append("{")
+                .append("\"id\":").append(l.getId()).append(",")
+                .append("\"username\":\"").append(WebHttpUtil.jsonEsc(l.getUsername())).append("\",")
+                .append("\"bookId\":").append(l.getBookId()).append(",")
+                .append("\"loanDate\":\"").append(WebHttpUtil.jsonEsc(String.valueOf(l.getLoanDate()))).append("\",")
+                .append("\"returnDate\":").append(returnDate)
+                .append("}");
+    }
+
     private static String usersToJson(List<User> users) {
         StringBuilder b = new StringBuilder();
         b.append("[");
@@ -131,6 +131,12 @@ public final class WebHttpUtil {
                 .replace("'", "&#39;");
     }
 
+    public static String csvEsc(String s) {
+        if (s == null) return "";
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
     public static String jsonEsc(String s) {
         if (s == null) return "";
         // Minimal JSON string escaper (enough for this project)